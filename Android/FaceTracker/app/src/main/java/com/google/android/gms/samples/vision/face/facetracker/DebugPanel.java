@@ -0,0 +1,216 @@
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.SessionRecorder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The debug panel shown over the camera preview in debug builds. It switches the debug overlays
+ * and the audio chart on and off while the app runs, and shows the latency of each stage from
+ * camera frame to stand command, and from command to motor as acknowledged by the server,
+ * refreshed twice a second. The dump button writes the whole latency histograms to a file in the
+ * app's external files directory, and the record switch records the faces and commands of the
+ * session to another one there, for replaying on a desktop. Recording stops with the panel.<p>
+ *
+ * The overlay switches are read while drawing and on the detector thread, so they are static and
+ * volatile. Everything else is only used from the UI thread.
+ */
+class DebugPanel {
+    private static final String TAG = "DebugPanel";
+    private static final long REFRESH_MS = 500;
+
+    private static volatile boolean sFaceInfo = false;
+    private static volatile boolean sSections = true;
+
+    interface Listener {
+        void onAudioChartChanged(boolean shown);
+
+        /**
+         * @param recorder The recorder to record the session to, or null once recording stopped
+         */
+        void onRecorderChanged(SessionRecorder recorder);
+    }
+
+    private final View mPanel;
+    private final TextView mLatencyText;
+    private final CheckBox mRecord;
+    private final Listener mListener;
+    private SessionRecorder mRecorder;
+    private final PipelineLatency mLatency;
+    private final CommandLatency mCommandLatency;
+    private final StringBuilder mSummary = new StringBuilder();
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            mPanel.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    DebugPanel(View panel, PipelineLatency latency, CommandLatency commandLatency,
+               final Listener listener) {
+        mPanel = panel;
+        mLatency = latency;
+        mCommandLatency = commandLatency;
+        mLatencyText = (TextView) panel.findViewById(R.id.debug_latency);
+        mListener = listener;
+
+        CheckBox faceInfo = (CheckBox) panel.findViewById(R.id.debug_face_info);
+        faceInfo.setChecked(sFaceInfo);
+        faceInfo.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                sFaceInfo = checked;
+            }
+        });
+        CheckBox sections = (CheckBox) panel.findViewById(R.id.debug_sections);
+        sections.setChecked(sSections);
+        sections.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                sSections = checked;
+            }
+        });
+        CheckBox audioChart = (CheckBox) panel.findViewById(R.id.debug_audio_chart);
+        audioChart.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                listener.onAudioChartChanged(checked);
+            }
+        });
+        mRecord = (CheckBox) panel.findViewById(R.id.debug_record);
+        mRecord.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton button, boolean checked) {
+                if (checked) {
+                    startRecording();
+                } else {
+                    stopRecording();
+                }
+            }
+        });
+        Button dump = (Button) panel.findViewById(R.id.debug_dump);
+        dump.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                dump();
+            }
+        });
+
+        panel.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * @return Whether to draw the position, classifications and angles of each face
+     */
+    static boolean isFaceInfoShown() {
+        return sFaceInfo;
+    }
+
+    /**
+     * @return Whether to draw the screen sections and the one each face is in
+     */
+    static boolean isSectionsShown() {
+        return sSections;
+    }
+
+    /**
+     * Starts refreshing the latencies.
+     */
+    void start() {
+        mPanel.removeCallbacks(mRefresh);
+        mPanel.post(mRefresh);
+    }
+
+    /**
+     * Stops refreshing the latencies, and stops recording.
+     */
+    void stop() {
+        mPanel.removeCallbacks(mRefresh);
+        mRecord.setChecked(false);
+    }
+
+    private void refresh() {
+        mSummary.setLength(0);
+        mLatency.appendSummary(mSummary);
+        mCommandLatency.appendSummary(mSummary);
+        mLatencyText.setText(mSummary);
+    }
+
+    private void startRecording() {
+        Context context = mPanel.getContext();
+        File file = createFile("session-", ".ftrec");
+        try {
+            mRecorder = new SessionRecorder(file);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not create " + file, e);
+            Toast.makeText(context, "Could not start recording", Toast.LENGTH_LONG).show();
+            mRecord.setChecked(false);
+            return;
+        }
+        mListener.onRecorderChanged(mRecorder);
+        Toast.makeText(context, "Recording to " + file, Toast.LENGTH_LONG).show();
+    }
+
+    private void stopRecording() {
+        if (mRecorder == null) {
+            return;
+        }
+        mListener.onRecorderChanged(null);
+        try {
+            mRecorder.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Recording failed", e);
+            Toast.makeText(mPanel.getContext(), "Recording failed, the session is incomplete",
+                    Toast.LENGTH_LONG).show();
+        }
+        mRecorder = null;
+    }
+
+    private File createFile(String prefix, String suffix) {
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        return new File(mPanel.getContext().getExternalFilesDir(null), prefix + time + suffix);
+    }
+
+    private void dump() {
+        Context context = mPanel.getContext();
+        File file = createFile("latency-", ".txt");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file);
+            mLatency.write(writer);
+            mSummary.setLength(0);
+            mCommandLatency.appendSummary(mSummary);
+            writer.write("# " + mSummary);
+            Toast.makeText(context, "Latencies written to " + file, Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write " + file, e);
+            Toast.makeText(context, "Could not write the latencies", Toast.LENGTH_LONG).show();
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not close " + file, e);
+                }
+            }
+        }
+    }
+}
@@ -18,10 +18,10 @@ package com.google.android.gms.samples.vision.face.facetracker;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RectF;
 import android.util.Log;
 
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.TripleBuffer;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
 import com.google.android.gms.vision.face.Face;
 
@@ -29,7 +29,11 @@ import java.util.Locale;
 
 /**
  * Graphic instance for rendering face position, orientation, and landmarks within an associated
- * graphic overlay view.
+ * graphic overlay view.<p>
+ *
+ * The detector thread copies each face update into a {@link FaceState} and hands it to the UI
+ * thread through a {@link TripleBuffer}, so drawing always sees a whole update and neither thread
+ * waits for the other.
  */
 class FaceGraphic extends GraphicOverlay.Graphic {
     private static final String TAG = "FaceGraphic";
@@ -50,19 +54,38 @@ class FaceGraphic extends GraphicOverlay.Graphic {
     };
     private static int mCurrentColorIndex = 0;
 
+    // Shared by all face graphics, which are all drawn on the UI thread
+    private static final SectionGeometry SECTIONS = new SectionGeometry();
+
     private final Paint mFacePositionPaint;
     private final Paint mIdPaint;
     private final Paint mBoxPaint;
 
     private final Paint paintBlue;
     private final Paint paintTrans;
-    private Path path;
 
-    private volatile Face mFace;
+    private final TripleBuffer<FaceState> mStates =
+            new TripleBuffer<>(new FaceState(), new FaceState(), new FaceState());
     private int mFaceId;
-    private String mSection;
     //private float mFaceHappiness;
 
+    /**
+     * Everything drawn for one face update.
+     */
+    private static class FaceState {
+        boolean mValid;
+        float mCenterX;
+        float mCenterY;
+        float mWidth;
+        float mHeight;
+        float mSmiling;
+        float mLeftEyeOpen;
+        float mRightEyeOpen;
+        float mEulerY;
+        float mEulerZ;
+        FaceRegion mSection;
+    }
+
     FaceGraphic(GraphicOverlay overlay) {
         super(overlay);
 
@@ -100,9 +123,20 @@ class FaceGraphic extends GraphicOverlay.Graphic {
      * Updates the face instance from the detection of the most recent frame.  Invalidates the
      * relevant portions of the overlay to trigger a redraw.
      */
-    void updateFace(Face face, String section) {
-        mFace = face;
-        mSection = section;
+    void updateFace(Face face, FaceRegion section) {
+        FaceState state = mStates.getBack();
+        state.mValid = true;
+        state.mCenterX = face.getPosition().x + face.getWidth() / 2;
+        state.mCenterY = face.getPosition().y + face.getHeight() / 2;
+        state.mWidth = face.getWidth();
+        state.mHeight = face.getHeight();
+        state.mSmiling = face.getIsSmilingProbability();
+        state.mLeftEyeOpen = face.getIsLeftEyeOpenProbability();
+        state.mRightEyeOpen = face.getIsRightEyeOpenProbability();
+        state.mEulerY = face.getEulerY();
+        state.mEulerZ = face.getEulerZ();
+        state.mSection = section;
+        mStates.publish();
         postInvalidate();
     }
 
@@ -111,101 +145,43 @@ class FaceGraphic extends GraphicOverlay.Graphic {
      */
     @Override
     public void draw(Canvas canvas) {
-        Face face = mFace;
-        if (face == null) {
+        FaceState face = mStates.getFront();
+        if (!face.mValid) {
             //Log.i("FaceGraphic", "face is null");
             return;
         }
         //Log.i("FaceGraphic", "face is NOT null");
 
         // Draws a circle at the position of the detected face, with the face's track id below.
-        float x = translateX(face.getPosition().x + face.getWidth() / 2);
-        float y = translateY(face.getPosition().y + face.getHeight() / 2);
+        float x = translateX(face.mCenterX);
+        float y = translateY(face.mCenterY);
         Locale l = Locale.getDefault();
 
         // Draws a bounding box around the face.
-        float xOffset = scaleX(face.getWidth() / 2.0f);
-        float yOffset = scaleY(face.getHeight() / 2.0f);
+        float xOffset = scaleX(face.mWidth / 2.0f);
+        float yOffset = scaleY(face.mHeight / 2.0f);
         float left = x - xOffset;
         float top = y - yOffset;
         float right = x + xOffset;
         float bottom = y + yOffset;
         canvas.drawRect(left, top, right, bottom, mBoxPaint);
 
-        if (FaceTrackerActivity.DEBUG && FaceTrackerActivity.DEBUG_VIDEO_FACE_INFO) {
+        if (FaceTrackerActivity.DEBUG && DebugPanel.isFaceInfoShown()) {
             canvas.drawCircle(x, y, FACE_POSITION_RADIUS, mFacePositionPaint);
             canvas.drawText("id: " + mFaceId, x + ID_X_OFFSET, y + ID_Y_OFFSET, mIdPaint);
-            canvas.drawText("happiness: " + String.format(l, "%.2f", face.getIsSmilingProbability()), x - ID_X_OFFSET, y - ID_Y_OFFSET, mIdPaint);
-            canvas.drawText("right eye: " + String.format(l, "%.2f", face.getIsRightEyeOpenProbability()), x + ID_X_OFFSET * 2, y + ID_Y_OFFSET * 2, mIdPaint);
-            canvas.drawText("left eye: " + String.format(l, "%.2f", face.getIsLeftEyeOpenProbability()), x - ID_X_OFFSET*2, y - ID_Y_OFFSET*2, mIdPaint);
-            canvas.drawText("euler y: " + String.format(l, "%.2f", face.getEulerY()), xOffset, bottom + 40, mIdPaint);
-            canvas.drawText("euler z: " + String.format(l, "%.2f", face.getEulerZ()), xOffset, bottom + 80, mIdPaint);
+            canvas.drawText("happiness: " + String.format(l, "%.2f", face.mSmiling), x - ID_X_OFFSET, y - ID_Y_OFFSET, mIdPaint);
+            canvas.drawText("right eye: " + String.format(l, "%.2f", face.mRightEyeOpen), x + ID_X_OFFSET * 2, y + ID_Y_OFFSET * 2, mIdPaint);
+            canvas.drawText("left eye: " + String.format(l, "%.2f", face.mLeftEyeOpen), x - ID_X_OFFSET*2, y - ID_Y_OFFSET*2, mIdPaint);
+            canvas.drawText("euler y: " + String.format(l, "%.2f", face.mEulerY), xOffset, bottom + 40, mIdPaint);
+            canvas.drawText("euler z: " + String.format(l, "%.2f", face.mEulerZ), xOffset, bottom + 80, mIdPaint);
         }
 
-        if (FaceTrackerActivity.DEBUG && FaceTrackerActivity.DEBUG_VIDEO_SECTIONS) {
-            float sizeX = canvas.getWidth();
-            float sizeY = canvas.getHeight();
-
-            path = new Path();
-
-            float o1 = (1f - 0.33f) / 2;
-            float o2 = (1f - 0.55f) / 2;
-
-            switch(mSection) {
-                case "L-1":
-                    path.addArc(new RectF(sizeX * o1, sizeY * o1, sizeX - sizeX * o1, sizeY - sizeY * o1), 225f, -90f);
-                    path.arcTo(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 135f, 90f);
-                    break;
-                case "R-1":
-                    path.addArc(new RectF(sizeX * o1, sizeY * o1, sizeX - sizeX * o1, sizeY - sizeY * o1), 45f, -90f);
-                    path.arcTo(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 315f, 90f);
-                    break;
-                case "U-1":
-                    path.addArc(new RectF(sizeX * o1, sizeY * o1, sizeX - sizeX * o1, sizeY - sizeY * o1), 315f, -90f);
-                    path.arcTo(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 225f, 90f);
-                    break;
-                case "D-1":
-                    path.addArc(new RectF(sizeX * o1, sizeY * o1, sizeX - sizeX * o1, sizeY - sizeY * o1), 135f, -90f);
-                    path.arcTo(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 45f, 90f);
-                    break;
-                case "L-2":
-                    path.addArc(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 135f, 90f);
-                    path.lineTo(0f, 0f);
-                    path.lineTo(0f, sizeY);
-                    break;
-                case "R-2":
-                    path.addArc(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 45f, -90f);
-                    path.lineTo(sizeX, 0f);
-                    path.lineTo(sizeX, sizeY);
-                    break;
-                case "U-2":
-                    path.addArc(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 225f, 90f);
-                    path.lineTo(sizeX, 0f);
-                    path.lineTo(0f, 0f);
-                    break;
-                case "D-2":
-                    path.addArc(new RectF(sizeX * o2, sizeY * o2, sizeX - sizeX * o2, sizeY - sizeY * o2), 45f, 90f);
-                    path.lineTo(0f, sizeY);
-                    path.lineTo(sizeX, sizeY);
-                    break;
-                case "Center":
-                    path.addOval(new RectF(sizeX * o1, sizeY * o1, sizeX - sizeX * o1, sizeY - sizeY * o1), Path.Direction.CW);
-                    break;
-                default:
-                    //Log.e(TAG, "Received unknown screen section: " + mSection);
-                    break;
+        if (FaceTrackerActivity.DEBUG && DebugPanel.isSectionsShown()) {
+            SECTIONS.setSize(canvas.getWidth(), canvas.getHeight());
+            if (face.mSection != null) {
+                canvas.drawPath(SECTIONS.getSection(face.mSection), paintTrans);
             }
-
-            path.close();
-            canvas.drawPath(path, paintTrans);
-
-            // Draw guidelines
-            canvas.drawLine(0, 0, sizeX, sizeY, paintBlue);
-            canvas.drawLine(sizeX, 0, 0, sizeY, paintBlue);
-            float oval_size = o1;
-            canvas.drawOval(new RectF(sizeX * oval_size, sizeY * oval_size, sizeX - sizeX * oval_size, sizeY - sizeY * oval_size), paintBlue);
-            oval_size = o2;
-            canvas.drawOval(new RectF(sizeX * oval_size, sizeY * oval_size, sizeX - sizeX * oval_size, sizeY - sizeY * oval_size), paintBlue);
+            canvas.drawPath(SECTIONS.getGuides(), paintBlue);
         }
     }
 }
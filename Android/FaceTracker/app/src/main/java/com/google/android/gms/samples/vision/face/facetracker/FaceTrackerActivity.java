@@ -19,13 +19,13 @@ import android.Manifest;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.media.MediaRecorder;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -35,6 +35,7 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.Toast;
 
@@ -42,29 +43,58 @@ import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.samples.vision.face.facetracker.core.AmplitudeHistory;
+import com.google.android.gms.samples.vision.face.facetracker.core.BeatTracker;
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandDispatcher;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandGovernor;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandSink;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandTransport;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceMotionFilter;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.ProportionalSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.RhythmPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.RingSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.SessionRecorder;
+import com.google.android.gms.samples.vision.face.facetracker.core.SoundAcquisition;
+import com.google.android.gms.samples.vision.face.facetracker.core.SoundBearingEstimator;
+import com.google.android.gms.samples.vision.face.facetracker.core.SteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.StreamCommandWriter;
+import com.google.android.gms.samples.vision.face.facetracker.core.TargetSelector;
+import com.google.android.gms.samples.vision.face.facetracker.core.TcpTransport;
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.CameraSourcePreview;
 import com.google.android.gms.samples.vision.face.facetracker.ui.camera.GraphicOverlay;
+import com.google.android.gms.samples.vision.face.facetracker.utility.AdaptiveFaceDetector;
+import com.google.android.gms.samples.vision.face.facetracker.utility.AmplitudeChartEntries;
+import com.google.android.gms.samples.vision.face.facetracker.utility.AudioCapture;
+import com.google.android.gms.samples.vision.face.facetracker.utility.BluetoothTransport;
+import com.google.android.gms.samples.vision.face.facetracker.utility.CroppingFaceDetector;
 import com.google.android.gms.samples.vision.face.facetracker.utility.MathUtility;
 import com.google.android.gms.samples.vision.face.facetracker.utility.SoundMeter;
+import com.google.android.gms.samples.vision.face.facetracker.utility.TargetProcessor;
+import com.google.android.gms.samples.vision.face.facetracker.utility.TimedFaceDetector;
 import com.google.android.gms.vision.CameraSource;
+import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.face.Face;
 import com.google.android.gms.vision.face.FaceDetector;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Activity for the face tracker app.  This app detects faces with the rear facing camera, and draws
@@ -73,13 +103,25 @@ import java.util.UUID;
 public final class FaceTrackerActivity extends AppCompatActivity {
     public static final String TAG = "FaceTracker";
 
-    // Master switch for all debugging
+    // Master switch for all debugging, shows the debug panel where the rest can be switched on
     public static final boolean DEBUG = false;
-    // Minor switches for debugging
-    public static final boolean DEBUG_MEASURE_AUDIO = false;
-    public static final boolean DEBUG_AUDIO_CHART = false;
-    public static final boolean DEBUG_VIDEO_FACE_INFO = false;
-    public static final boolean DEBUG_VIDEO_SECTIONS = true;
+
+    // Steer with short timed moves sized by how far off center the face is, instead of moving
+    // until the face is back in the center. No faster, but it also re-centers faces that are off
+    // diagonally, which the ring policy leaves where they are (see compareSteering).
+    public static final boolean PROPORTIONAL_STEERING = false;
+    // Steer towards where the face will be once a command reaches the stand
+    public static final boolean PREDICT_MOTION = true;
+    // Which face to follow when there are several
+    public static final TargetSelector.Strategy TARGET_STRATEGY = TargetSelector.Strategy.LARGEST;
+    // Use fast face detection while the face is centered, and skip frames while it is also still
+    public static final boolean ADAPTIVE_DETECTION = true;
+    // Only search the area around the face while there is a single face
+    public static final boolean CROP_DETECTION = true;
+    // Turn towards sounds while no face is in view
+    public static final boolean SOUND_ACQUISITION = true;
+    // Flash the LED on the stand along with the beat of any music playing
+    public static final boolean RHYTHM_MODE = true;
 
     private CameraSource mCameraSource = null;
 
@@ -88,26 +130,57 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     private static LineChart chart;
     private static LineDataSet dataSet;
     private static LineData data;
-    private static ArrayList<Entry> yVal;
+    private static AmplitudeHistory amplitudes;
 
     private static final int audioSamplerInterval = 30;
     private static final int audioDisplayTime = 10;
     private Handler audioSamplerHandler;
     private Runnable audioSamplerRunnable;
     private SoundMeter soundMeter;
+    private AudioCapture mAudioCapture;
+    private SoundAcquisition mSoundAcquisition;
+    private RhythmPolicy mRhythm;
+    // Number of faces currently in view, only touched on the detector thread
+    private int mVisibleFaces;
     private boolean isRecording;
-    private boolean movingToCenter = false;
-    private int index = 1;
-    private int btConnectRetryCount = 0;
-    private int maxBtConnectRetry = 5;
+    private FaceSteering mSteering;
+    // The face being steered towards in the current frame, only touched on the detector thread
+    private final FaceObservation mTargetObservation = new FaceObservation();
+    private int mTargetId = -1;
+    private FaceRegion mTargetRegion;
+    // Tells the detector thread which frames only repeat the faces of an earlier one, or null
+    private AdaptiveFaceDetector mAdaptiveDetector;
+    // The overlay's transform for the current frame, null until the preview is laid out
+    private ViewTransform mFrameTransform;
+    // Set from the debug panel while the session is being recorded
+    private volatile SessionRecorder mSessionRecorder;
+    // What sent the command going through the governor, for the recording. Guarded by
+    // mCommandSourceLock, which is held from the sender all the way to sendBtMsg.
+    private final Object mCommandSourceLock = new Object();
+    private int mCommandSource = SessionRecorder.SOURCE_UNKNOWN;
+    private final FaceObservation mRecordedFace = new FaceObservation();
 
     private static final int RC_HANDLE_GMS = 9001;
     // permission request codes need to be < 256
     public static final int REQUEST_ID_MULTIPLE_PERMISSIONS = 1;
 
-    BluetoothSocket mmSocket;
-    BluetoothDevice mmDevice = null;
-    BluetoothAdapter mBluetoothAdapter;
+    // Intent extras that point the app at a stand, remembered for later launches, e.g.
+    // adb shell am start -n <package>/.FaceTrackerActivity --es stand_address <MAC address>
+    // An empty value goes back to the default.
+    public static final String EXTRA_STAND_ADDRESS = "stand_address";
+    // "<host>:<port>" of a PhoneServer.py started with --tcp, to drive the stand over Wi-Fi
+    // instead of Bluetooth
+    public static final String EXTRA_STAND_TCP_ADDRESS = "stand_tcp_address";
+    private static final String STAND_PREFERENCES = "stand";
+    private static final String DEFAULT_STAND_ADDRESS = "00:1A:7D:DA:71:13";
+    private boolean mStandOnBluetooth;
+    private CommandDispatcher mCommandDispatcher;
+    private CommandGovernor mCommandGovernor;
+    // Latencies from camera frame to stand command, shown in the debug panel
+    private final PipelineLatency mLatency = new PipelineLatency();
+    // Command to motor latency, from the stand's acknowledgements
+    private final CommandLatency mCommandLatency = new CommandLatency();
+    private DebugPanel mDebugPanel;
 
     //==============================================================================================
     // Activity Methods
@@ -117,14 +190,10 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         @Override
         public void handleMessage(Message msg){
             if(msg.what == 0){
-                if (msg.arg1 != 0) {
-                    // We want to change the data in the chart, but keep it the same size
-                    // So we just shift all the data down
-                    for(int i = 0; i < yVal.size() - 1; i++) {
-                        yVal.set(i, new Entry(yVal.get(i + 1).getVal(), i));
-                    }
-                    yVal.set(yVal.size() - 1, new Entry(msg.arg1, yVal.size()));
-                    dataSet = new LineDataSet(yVal, "Amplitude");
+                if (msg.arg1 != 0 && amplitudes != null) {
+                    // The chart reads its entries straight from the history, so scrolling it
+                    // along is just adding the new value
+                    amplitudes.add(msg.arg1);
                     data.notifyDataChanged();
                     chart.notifyDataSetChanged();
                     chart.invalidate();
@@ -146,9 +215,60 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         mPreview = (CameraSourcePreview) findViewById(R.id.preview);
         mGraphicOverlay = (GraphicOverlay) findViewById(R.id.faceOverlay);
 
-        if (DEBUG && DEBUG_MEASURE_AUDIO) {
-            isRecording = true;
-            soundMeter = new SoundMeter();
+        StreamCommandWriter writer = new StreamCommandWriter(createTransport());
+        writer.setLatency(mCommandLatency);
+        mCommandDispatcher = new CommandDispatcher(writer);
+        mCommandDispatcher.setLatency(mLatency);
+        mCommandDispatcher.setListener(new CommandDispatcher.Listener() {
+            @Override
+            public void onConnected() {
+                Log.i(TAG, "Connected to the stand");
+                // The stand may have been reset while we were away
+                mCommandGovernor.reset();
+            }
+
+            @Override
+            public void onConnectionFailed(int attempt, long retryInMs, IOException e) {
+                Log.e(TAG, "Could not reach the stand (attempt " + attempt + "), retrying in "
+                        + retryInMs + "ms", e);
+            }
+        });
+
+        // Steers towards the target face, on the detector thread
+        SteeringPolicy policy = PROPORTIONAL_STEERING
+                ? new ProportionalSteeringPolicy() : new RingSteeringPolicy();
+        // Everything that steers the stand goes through the governor, which drops commands that
+        // would not change anything
+        mCommandGovernor = new CommandGovernor(new CommandSink() {
+            @Override
+            public void send(Command command, int durationMs) {
+                sendBtMsg(command, durationMs);
+            }
+        });
+        mSteering = new FaceSteering(policy, sentBy(SessionRecorder.SOURCE_STEERING));
+        if (PREDICT_MOTION) {
+            mSteering.setMotionFilter(new FaceMotionFilter());
+        }
+
+        if (SOUND_ACQUISITION) {
+            // The camcorder source records from two microphones, which is what gives a direction
+            mAudioCapture = new AudioCapture(MediaRecorder.AudioSource.CAMCORDER,
+                    AudioCapture.DEFAULT_SAMPLE_RATE, 2, AudioCapture.DEFAULT_BLOCK_MS);
+            mSoundAcquisition = new SoundAcquisition(new SoundBearingEstimator(),
+                    sentBy(SessionRecorder.SOURCE_SOUND));
+            mAudioCapture.addListener(mSoundAcquisition);
+        } else if (RHYTHM_MODE || DEBUG) {
+            mAudioCapture = new AudioCapture();
+        }
+        if (RHYTHM_MODE) {
+            mRhythm = new RhythmPolicy(new BeatTracker(mAudioCapture.getSampleRate()),
+                    sentBy(SessionRecorder.SOURCE_RHYTHM),
+                    RhythmPolicy.Style.LIGHTS);
+            mAudioCapture.addListener(mRhythm);
+        }
+
+        if (DEBUG) {
+            soundMeter = new SoundMeter(mAudioCapture);
 
             // Receives data from the audio sampler
             // We use a handler for better performance when rapidly polling
@@ -171,35 +291,57 @@ public final class FaceTrackerActivity extends AppCompatActivity {
                 }
             };
         }
+        chart = (LineChart) findViewById(R.id.chart);
+        chart.setVisibility(View.GONE);
+        if (DEBUG) {
+            createChart();
+            mDebugPanel = new DebugPanel(findViewById(R.id.debug_panel), mLatency,
+                    mCommandLatency, new DebugPanel.Listener() {
+                        @Override
+                        public void onAudioChartChanged(boolean shown) {
+                            showAudioChart(shown);
+                        }
+
+                        @Override
+                        public void onRecorderChanged(SessionRecorder recorder) {
+                            mSessionRecorder = recorder;
+                        }
+                    });
+        }
+
         // Checks for permissions and requests them if they are not given
         if (checkAndRequestPermissions()) {
-            if (DEBUG && DEBUG_AUDIO_CHART) {
-                createChart();
-            } else {
-                chart = (LineChart) findViewById(R.id.chart);
-                chart.setVisibility(View.GONE);
-            }
             createCameraSource();
         }
 
     }
 
+    /**
+     * Shows or hides the audio chart, and starts or stops sampling the volume for it.
+     */
+    private void showAudioChart(boolean shown) {
+        chart.setVisibility(shown ? View.VISIBLE : View.GONE);
+        isRecording = shown;
+        audioSamplerHandler.removeCallbacks(audioSamplerRunnable);
+        if (shown) {
+            audioSamplerHandler.postDelayed(audioSamplerRunnable, audioSamplerInterval);
+        }
+    }
+
     /**
      * Sets up the audio chart
      */
     private void createChart() {
         chart = (LineChart) findViewById(R.id.chart);
 
-        yVal = new ArrayList<>();
-        ArrayList<String> xVal = new ArrayList<>();
         // Create a chart of the correct size and fill it with empty data
-        for (int i = 1; i <= (audioDisplayTime * (1000 / audioSamplerInterval)); i++) {
+        amplitudes = new AmplitudeHistory(audioDisplayTime * (1000 / audioSamplerInterval));
+        ArrayList<String> xVal = new ArrayList<>();
+        for (int i = 1; i <= amplitudes.size(); i++) {
             xVal.add("" + i);
-            yVal.add(new Entry(0, index));
-            index++;
         }
 
-        dataSet = new LineDataSet(yVal, "Amplitude");
+        dataSet = new LineDataSet(new AmplitudeChartEntries(amplitudes), "Amplitude");
         dataSet.setDrawCircles(false);
 
         ArrayList<ILineDataSet> dataSets = new ArrayList<>();
@@ -233,14 +375,44 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     private void createCameraSource() {
 
         Context context = getApplicationContext();
-        FaceDetector detector = new FaceDetector.Builder(context)
-                .setClassificationType(FaceDetector.ALL_CLASSIFICATIONS)
+        // Smiling and eye probabilities are only ever shown in the face info debug overlay
+        int classifications = DEBUG
+                ? FaceDetector.ALL_CLASSIFICATIONS : FaceDetector.NO_CLASSIFICATIONS;
+        FaceDetector accurateDetector = new FaceDetector.Builder(context)
+                .setClassificationType(classifications)
                 .setMode(FaceDetector.ACCURATE_MODE)
                 .build();
+        Detector<Face> detector = accurateDetector;
+        if (ADAPTIVE_DETECTION) {
+            Detector<Face> fastDetector = new FaceDetector.Builder(context)
+                    .setClassificationType(classifications)
+                    .setMode(FaceDetector.FAST_MODE)
+                    .build();
+            if (CROP_DETECTION) {
+                fastDetector = new CroppingFaceDetector(fastDetector,
+                        createCropDetector(context, classifications, FaceDetector.FAST_MODE));
+            }
+            mAdaptiveDetector = new AdaptiveFaceDetector(accurateDetector, fastDetector);
+            detector = mAdaptiveDetector;
+        } else if (CROP_DETECTION) {
+            detector = new CroppingFaceDetector(accurateDetector,
+                    createCropDetector(context, classifications, FaceDetector.ACCURATE_MODE));
+        }
+
+        detector = new TimedFaceDetector(detector, mLatency);
 
-        detector.setProcessor(
-                new MultiProcessor.Builder<>(new GraphicFaceTrackerFactory())
-                        .build());
+        // Only one face is steered towards, the trackers just draw
+        TargetProcessor processor = new TargetProcessor(
+                new MultiProcessor.Builder<>(new GraphicFaceTrackerFactory()).build(),
+                new TargetSelector(TARGET_STRATEGY),
+                new TargetProcessor.Listener() {
+                    @Override
+                    public void onTarget(FaceDetector.Detections<Face> detections, Face target) {
+                        steerTowards(detections, target);
+                    }
+                });
+        processor.setLatency(mLatency);
+        detector.setProcessor(processor);
 
         if (!detector.isOperational()) {
             // Note: The first time that an app using face API is installed on a device, GMS will
@@ -261,85 +433,178 @@ public final class FaceTrackerActivity extends AppCompatActivity {
                 .build();
     }
 
-    public void setupDevice() {
+    /**
+     * Creates the detector that searches the box around a locked face. The box only ever holds
+     * that one face, and the face keeps the ID from the full frame detector, so it doesn't need
+     * tracking.
+     */
+    private static FaceDetector createCropDetector(Context context, int classifications, int mode) {
+        return new FaceDetector.Builder(context)
+                .setClassificationType(classifications)
+                .setMode(mode)
+                .setProminentFaceOnly(true)
+                .setTrackingEnabled(false)
+                .build();
+    }
 
-        if (mmSocket != null && mmSocket.isConnected()) {
+    /**
+     * @return The connection to the stand, over TCP if {@link #EXTRA_STAND_TCP_ADDRESS} is set and
+     * over Bluetooth otherwise
+     */
+    private CommandTransport createTransport() {
+        String tcpAddress = getStandAddress(EXTRA_STAND_TCP_ADDRESS);
+        if (tcpAddress != null) {
+            int colon = tcpAddress.lastIndexOf(':');
             try {
-                mmSocket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                if (colon > 0) {
+                    mStandOnBluetooth = false;
+                    return new TcpTransport(tcpAddress.substring(0, colon),
+                            Integer.parseInt(tcpAddress.substring(colon + 1)));
+                }
+            } catch (NumberFormatException e) {
+                // Falls through to Bluetooth
             }
+            Log.e(TAG, "Not a <host>:<port> address: " + tcpAddress + ", using Bluetooth");
         }
 
-        mmSocket = null;
-        mmDevice = null;
-        mBluetoothAdapter = null;
+        String address = getStandAddress(EXTRA_STAND_ADDRESS);
+        if (address == null) {
+            address = DEFAULT_STAND_ADDRESS;
+        } else if (!BluetoothAdapter.checkBluetoothAddress(address)) {
+            Log.e(TAG, "Not a Bluetooth address: " + address + ", using the default stand");
+            address = DEFAULT_STAND_ADDRESS;
+        }
+        Log.i(TAG, "Stand at " + address);
+        mStandOnBluetooth = true;
+        return new BluetoothTransport(address);
+    }
+
+    /**
+     * @return The address from the intent extra of the given name, or the one it was set to on an
+     * earlier launch, or null if it was never set or was set to an empty value
+     */
+    private String getStandAddress(String extra) {
+        SharedPreferences preferences = getSharedPreferences(STAND_PREFERENCES, MODE_PRIVATE);
+        String address = getIntent().getStringExtra(extra);
+        if (address == null) {
+            return preferences.getString(extra, null);
+        }
+        if (address.isEmpty()) {
+            preferences.edit().remove(extra).apply();
+            return null;
+        }
+        preferences.edit().putString(extra, address).apply();
+        return address;
+    }
 
-        mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+    /**
+     * Makes sure Bluetooth is enabled if the stand is on Bluetooth, and starts the thread that
+     * sends commands to the stand. It connects straight away, so the connection is usually up by
+     * the time the first face is found.
+     */
+    public void setupDevice() {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
 
         // Make sure bluetooth is enabled
-        if (!mBluetoothAdapter.isEnabled()) {
+        if (mStandOnBluetooth && bluetoothAdapter != null && !bluetoothAdapter.isEnabled()) {
             Log.i(TAG, "Bluetooth is not enabled, asking to enable it");
             Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
             startActivityForResult(enableBtIntent, 1);
         }
 
-        mmDevice = mBluetoothAdapter.getRemoteDevice("00:1A:7D:DA:71:13");
+        mCommandDispatcher.start();
         Log.i(TAG, "Setup device!");
+    }
 
+    /**
+     * Steers the stand towards the face picked in the current frame, and records the frame while
+     * the session is being recorded. Frames the adaptive detector skipped are left out. Called on
+     * the detector thread once per frame, before the face trackers are updated.
+     */
+    private void steerTowards(FaceDetector.Detections<Face> detections, Face target) {
+        // Taken once, so the whole frame is mapped the same way even if the overlay changes
+        ViewTransform view = mGraphicOverlay.getTransform();
+        mFrameTransform = view;
+        if (view == null) {
+            mTargetId = -1;
+            return;
+        }
+        if (mAdaptiveDetector != null && mAdaptiveDetector.isRepeat()) {
+            // The faces are from an earlier frame, stamped with this frame's time, so they would
+            // look like a face that stopped moving. The target and its region stay as they were.
+            return;
+        }
+        long timestampMs = detections.getFrameMetadata().getTimestampMillis();
+        SessionRecorder recorder = mSessionRecorder;
+        if (recorder != null) {
+            record(recorder, detections.getDetectedItems(), target, timestampMs, view);
+        }
+        if (target == null) {
+            mTargetId = -1;
+            return;
+        }
+        MathUtility.toObservation(target, timestampMs, mTargetObservation);
+        mTargetRegion = mSteering.update(mTargetObservation, view);
+        mTargetId = target.getId();
     }
 
-    public void sendBtMsg(final String msg2send){
-        //UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb"); //Standard SerialPortService ID
-        UUID uuid = UUID.fromString("94f39d29-7d6d-437d-973b-fba39e49d4ee"); //Standard SerialPortService ID
-        try {
+    /**
+     * Records the frame and every face in it, with the overlay size and scale the steering sees.
+     */
+    private void record(SessionRecorder recorder, SparseArray<Face> faces, Face target,
+                        long timestampMs, ViewTransform view) {
+        recorder.recordFrame(timestampMs, faces.size(), view);
+        for (int i = 0; i < faces.size(); i++) {
+            Face face = faces.valueAt(i);
+            recorder.recordFace(MathUtility.toObservation(face, timestampMs, mRecordedFace),
+                    face == target, face.getEulerY(), face.getEulerZ(),
+                    face.getIsLeftEyeOpenProbability(), face.getIsRightEyeOpenProbability(),
+                    face.getIsSmilingProbability());
+        }
+    }
 
-            if (mmSocket == null) {
-                mmSocket = mmDevice.createRfcommSocketToServiceRecord(uuid);
-            }
+    /**
+     * Called by the face trackers on the detector thread when their face appears or disappears.
+     */
+    private void onFaceVisibilityChanged(boolean visible) {
+        mVisibleFaces += visible ? 1 : -1;
+        if (mSoundAcquisition != null) {
+            mSoundAcquisition.setFaceTracked(mVisibleFaces > 0);
+        }
+        if (mRhythm != null) {
+            mRhythm.setFaceTracked(mVisibleFaces > 0);
+        }
+    }
 
-            if (!mmSocket.isConnected()){
-                mmSocket.connect();
+    /**
+     * @return A sink that sends commands through the governor, noting who sent them for the
+     * session recording
+     */
+    private CommandSink sentBy(final int source) {
+        return new CommandSink() {
+            @Override
+            public void send(Command command, int durationMs) {
+                synchronized (mCommandSourceLock) {
+                    mCommandSource = source;
+                    mCommandGovernor.send(command, durationMs);
+                    mCommandSource = SessionRecorder.SOURCE_UNKNOWN;
+                }
             }
+        };
+    }
 
-            OutputStream mmOutputStream = mmSocket.getOutputStream();
-            mmOutputStream.write(msg2send.getBytes());
-
-            Log.i(TAG, "send bt msg "+ msg2send);
-
-        } catch (IOException e) {
-            if (btConnectRetryCount < maxBtConnectRetry) {
-                btConnectRetryCount++;
-                Log.e(TAG, "There was an IOException when trying to send a message to the device");
-                Log.e(TAG, "This was likely caused by the device being disconnected at the time");
-                Log.e(TAG, "The app will now try to connect to the device again");
-                setupDevice();
-                sendBtMsg(msg2send);
-            }
-            else {
-                // Offer to retry or quit app
-//                new AlertDialog.Builder(this)
-//                        .setTitle("Bluetooth Error")
-//                        .setMessage("Cannot reach the phone stand! Are you sure the stand is nearby and powered on?")
-//                        .setPositiveButton("Retry", new DialogInterface.OnClickListener() {
-//                            @Override
-//                            public void onClick(DialogInterface dialogInterface, int i) {
-//                                btConnectRetryCount = 0;
-//                                sendBtMsg(msg2send);
-//                            }
-//                        })
-//                        .setNegativeButton("Exit app", new DialogInterface.OnClickListener() {
-//                            @Override
-//                            public void onClick(DialogInterface dialogInterface, int i) {
-//                                FaceTrackerActivity.this.finishAffinity();
-//                            }
-//                        })
-//                        .setIcon(android.R.drawable.ic_dialog_alert)
-//                        .create();
-                this.finishAffinity();
+    /**
+     * Queues a command for the stand. This never blocks, the command is written by the dispatcher
+     * thread.
+     */
+    public void sendBtMsg(Command command, int durationMs) {
+        SessionRecorder recorder = mSessionRecorder;
+        if (recorder != null) {
+            synchronized (mCommandSourceLock) {
+                recorder.recordCommand(command, durationMs, mCommandSource);
             }
         }
-
+        mCommandDispatcher.send(command, durationMs);
     }
 
     /**
@@ -350,7 +615,6 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         super.onResume();
 
         setupDevice();
-        isRecording = true;
         startCameraSource();
     }
 
@@ -361,10 +625,14 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
 
-        if (DEBUG && DEBUG_MEASURE_AUDIO) {
+        if (mDebugPanel != null) {
             isRecording = false;
-            soundMeter.stop();
+            mDebugPanel.stop();
+        }
+        if (mAudioCapture != null) {
+            mAudioCapture.stop();
         }
+        mCommandDispatcher.stop();
         mPreview.stop();
     }
 
@@ -375,8 +643,8 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (DEBUG && DEBUG_MEASURE_AUDIO) {
-            soundMeter.stop();
+        if (mAudioCapture != null) {
+            mAudioCapture.stop();
         }
         if (mCameraSource != null) {
             mCameraSource.release();
@@ -501,9 +769,14 @@ public final class FaceTrackerActivity extends AppCompatActivity {
      */
     private void startCameraSource() {
 
-        if (DEBUG && DEBUG_MEASURE_AUDIO) {
-            soundMeter.start();
-            audioSamplerHandler.postDelayed(audioSamplerRunnable, audioSamplerInterval);
+        if (mAudioCapture != null) {
+            mAudioCapture.start();
+        }
+        if (mDebugPanel != null) {
+            mDebugPanel.start();
+            if (chart.getVisibility() == View.VISIBLE) {
+                showAudioChart(true);
+            }
         }
         // check that the device has play services available.
         int code = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(
@@ -547,6 +820,9 @@ public final class FaceTrackerActivity extends AppCompatActivity {
     private class GraphicFaceTracker extends Tracker<Face> {
         private final GraphicOverlay mOverlay;
         private final FaceGraphic mFaceGraphic;
+        private final FaceObservation mObservation = new FaceObservation();
+        private int mFaceId;
+        private boolean mVisible;
 
         GraphicFaceTracker(GraphicOverlay overlay) {
             mOverlay = overlay;
@@ -558,6 +834,7 @@ public final class FaceTrackerActivity extends AppCompatActivity {
          */
         @Override
         public void onNewItem(int faceId, Face item) {
+            mFaceId = faceId;
             mFaceGraphic.setId(faceId);
         }
 
@@ -567,42 +844,20 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         @Override
         public void onUpdate(FaceDetector.Detections<Face> detectionResults, Face face) {
             mOverlay.add(mFaceGraphic);
+            setVisible(true);
             //mFaceGraphic.updateFace(face);
-            int sizeX = mOverlay.getWidth();
-            int sizeY = mOverlay.getHeight();
-            float scaleX = (float) sizeX / (float) mCameraSource.getPreviewSize().getHeight();
-            float scaleY = (float) sizeY / (float) mCameraSource.getPreviewSize().getWidth();
-            int faceX = (int) MathUtility.getFaceX(face, sizeX, scaleX);
-            int faceY = (int) MathUtility.getFaceY(face, sizeY, scaleY);
-
-            String loc = MathUtility.getFaceLocation(sizeX, sizeY, faceX, faceY);
-            if (movingToCenter) {
-                if (loc.equals("Center")) {
-                    movingToCenter = false;
-                    sendBtMsg("stop");
-                }
-            } else if (loc.charAt(2) == '2') {
-                movingToCenter = true;
-                switch(loc.charAt(0)) {
-                    case 'U':
-                        sendBtMsg("up");
-                        break;
-                    case 'D':
-                        sendBtMsg("down");
-                        break;
-                    case 'L':
-                        sendBtMsg("right");
-                        break;
-                    case 'R':
-                        sendBtMsg("left");
-                        break;
-                    default:
-                        Log.e(TAG, "weird thing: " + loc);
-                        break;
-                }
+            FaceRegion region;
+            if (face.getId() == mTargetId) {
+                region = mTargetRegion;
+            } else if (mFrameTransform != null) {
+                long timestampMs = detectionResults.getFrameMetadata().getTimestampMillis();
+                MathUtility.toObservation(face, timestampMs, mObservation);
+                region = mSteering.classify(mObservation, mFrameTransform);
+            } else {
+                region = null;
             }
 
-            mFaceGraphic.updateFace(face, loc);
+            mFaceGraphic.updateFace(face, region);
         }
 
         /**
@@ -613,6 +868,7 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         @Override
         public void onMissing(FaceDetector.Detections<Face> detectionResults) {
             mOverlay.remove(mFaceGraphic);
+            setVisible(false);
         }
 
         /**
@@ -622,6 +878,15 @@ public final class FaceTrackerActivity extends AppCompatActivity {
         @Override
         public void onDone() {
             mOverlay.remove(mFaceGraphic);
+            mSteering.remove(mFaceId);
+            setVisible(false);
+        }
+
+        private void setVisible(boolean visible) {
+            if (visible != mVisible) {
+                mVisible = visible;
+                onFaceVisibilityChanged(visible);
+            }
         }
     }
 }
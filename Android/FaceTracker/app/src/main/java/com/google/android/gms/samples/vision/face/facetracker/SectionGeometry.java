@@ -0,0 +1,119 @@
+package com.google.android.gms.samples.vision.face.facetracker;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegionClassifier;
+
+/**
+ * Outlines of the screen sections for the section debug overlay: one path per {@link FaceRegion},
+ * plus the guide lines and ovals between them. They only depend on the canvas size, so they are
+ * built once per size and then drawn as they are every frame.<p>
+ *
+ * Only used from the UI thread.
+ */
+class SectionGeometry {
+    private static final float CENTER_INSET = (1f - FaceRegionClassifier.CENTER_OVAL_SIZE) / 2;
+    private static final float RING_INSET = (1f - FaceRegionClassifier.RING_OVAL_SIZE) / 2;
+
+    private final Path[] mSections = new Path[FaceRegion.values().length];
+    private final Path mGuides = new Path();
+    private final RectF mCenterOval = new RectF();
+    private final RectF mRingOval = new RectF();
+    private int mWidth;
+    private int mHeight;
+
+    SectionGeometry() {
+        for (int i = 0; i < mSections.length; i++) {
+            mSections[i] = new Path();
+        }
+    }
+
+    /**
+     * Rebuilds the paths if the canvas size changed since the last call.
+     */
+    void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+
+        float sizeX = width;
+        float sizeY = height;
+        mCenterOval.set(sizeX * CENTER_INSET, sizeY * CENTER_INSET,
+                sizeX - sizeX * CENTER_INSET, sizeY - sizeY * CENTER_INSET);
+        mRingOval.set(sizeX * RING_INSET, sizeY * RING_INSET,
+                sizeX - sizeX * RING_INSET, sizeY - sizeY * RING_INSET);
+
+        for (FaceRegion region : FaceRegion.values()) {
+            Path path = mSections[region.ordinal()];
+            path.reset();
+            switch (region) {
+                case LEFT_1:
+                    path.addArc(mCenterOval, 225f, -90f);
+                    path.arcTo(mRingOval, 135f, 90f);
+                    break;
+                case RIGHT_1:
+                    path.addArc(mCenterOval, 45f, -90f);
+                    path.arcTo(mRingOval, 315f, 90f);
+                    break;
+                case UP_1:
+                    path.addArc(mCenterOval, 315f, -90f);
+                    path.arcTo(mRingOval, 225f, 90f);
+                    break;
+                case DOWN_1:
+                    path.addArc(mCenterOval, 135f, -90f);
+                    path.arcTo(mRingOval, 45f, 90f);
+                    break;
+                case LEFT_2:
+                    path.addArc(mRingOval, 135f, 90f);
+                    path.lineTo(0f, 0f);
+                    path.lineTo(0f, sizeY);
+                    break;
+                case RIGHT_2:
+                    path.addArc(mRingOval, 45f, -90f);
+                    path.lineTo(sizeX, 0f);
+                    path.lineTo(sizeX, sizeY);
+                    break;
+                case UP_2:
+                    path.addArc(mRingOval, 225f, 90f);
+                    path.lineTo(sizeX, 0f);
+                    path.lineTo(0f, 0f);
+                    break;
+                case DOWN_2:
+                    path.addArc(mRingOval, 45f, 90f);
+                    path.lineTo(0f, sizeY);
+                    path.lineTo(sizeX, sizeY);
+                    break;
+                case CENTER:
+                    path.addOval(mCenterOval, Path.Direction.CW);
+                    break;
+            }
+            path.close();
+        }
+
+        mGuides.reset();
+        mGuides.moveTo(0, 0);
+        mGuides.lineTo(sizeX, sizeY);
+        mGuides.moveTo(sizeX, 0);
+        mGuides.lineTo(0, sizeY);
+        mGuides.addOval(mCenterOval, Path.Direction.CW);
+        mGuides.addOval(mRingOval, Path.Direction.CW);
+    }
+
+    /**
+     * @return The outline of the given section, to be filled
+     */
+    Path getSection(FaceRegion region) {
+        return mSections[region.ordinal()];
+    }
+
+    /**
+     * @return The diagonals and ovals that separate the sections, to be stroked
+     */
+    Path getGuides() {
+        return mGuides;
+    }
+}
@@ -21,10 +21,10 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
 import com.google.android.gms.vision.CameraSource;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A view which renders a series of custom graphics to be overlayed on top of an associated preview
@@ -43,16 +43,26 @@ import java.util.Set;
  * <li>{@link Graphic#translateX(float)} and {@link Graphic#translateY(float)} adjust the coordinate
  * from the preview's coordinate system to the view coordinate system.</li>
  * </ol>
+ * The mapping is a {@link ViewTransform}, built on the UI thread whenever the view size or the
+ * camera info changes. {@link #getTransform()} hands the same instance to the detector thread, so
+ * steering and drawing always agree on where a face is.<p>
+ *
+ * The detector thread adds and removes graphics on every frame while the UI thread draws them, so
+ * the overlay never locks: the graphics are kept in an array that is replaced, never changed, and
+ * {@link #onDraw(Canvas)} draws whichever array was current when it started. Adding a graphic that
+ * is already there does not replace anything.
  */
 public class GraphicOverlay extends View {
     private final static String TAG = "GraphicsOverlay";
-    private final Object mLock = new Object();
+    private static final Graphic[] NO_GRAPHICS = new Graphic[0];
     private int mPreviewWidth;
-    private float mWidthScaleFactor = 1.0f;
     private int mPreviewHeight;
-    private float mHeightScaleFactor = 1.0f;
     private int mFacing = CameraSource.CAMERA_FACING_BACK;
-    private final Set<Graphic> mGraphics = new HashSet<>();
+    // Null until both the view and the preview have a size
+    private volatile ViewTransform mTransform;
+    // The transform the current onDraw started with, only used on the UI thread
+    private ViewTransform mDrawTransform;
+    private final AtomicReference<Graphic[]> mGraphics = new AtomicReference<>(NO_GRAPHICS);
 
     /**
      * Base class for a custom graphics object to be rendered within the graphic overlay.  Subclass
@@ -85,14 +95,14 @@ public class GraphicOverlay extends View {
          * scale.
          */
         public float scaleX(float horizontal) {
-            return horizontal * mOverlay.mWidthScaleFactor;
+            return mOverlay.mDrawTransform.scaleX(horizontal);
         }
 
         /**
          * Adjusts a vertical value of the supplied value from the preview scale to the view scale.
          */
         public float scaleY(float vertical) {
-            return vertical * mOverlay.mHeightScaleFactor;
+            return mOverlay.mDrawTransform.scaleY(vertical);
         }
 
         /**
@@ -100,11 +110,7 @@ public class GraphicOverlay extends View {
          * system.
          */
         protected float translateX(float x) {
-            if (mOverlay.mFacing == CameraSource.CAMERA_FACING_FRONT) {
-                return mOverlay.getWidth() - scaleX(x);
-            } else {
-                return scaleX(x);
-            }
+            return mOverlay.mDrawTransform.mapX(x);
         }
 
         /**
@@ -112,7 +118,7 @@ public class GraphicOverlay extends View {
          * system.
          */
         protected float translateY(float y) {
-            return scaleY(y);
+            return mOverlay.mDrawTransform.mapY(y);
         }
 
         protected void postInvalidate() {
@@ -128,18 +134,25 @@ public class GraphicOverlay extends View {
      * Removes all graphics from the overlay.
      */
     public void clear() {
-        synchronized (mLock) {
-            mGraphics.clear();
-        }
+        mGraphics.set(NO_GRAPHICS);
         postInvalidate();
     }
 
     /**
-     * Adds a graphic to the overlay.
+     * Adds a graphic to the overlay, unless it is already there.
      */
     public void add(Graphic graphic) {
-        synchronized (mLock) {
-            mGraphics.add(graphic);
+        while (true) {
+            Graphic[] graphics = mGraphics.get();
+            if (indexOf(graphics, graphic) >= 0) {
+                break;
+            }
+            Graphic[] added = new Graphic[graphics.length + 1];
+            System.arraycopy(graphics, 0, added, 0, graphics.length);
+            added[graphics.length] = graphic;
+            if (mGraphics.compareAndSet(graphics, added)) {
+                break;
+            }
         }
         postInvalidate();
     }
@@ -148,25 +161,68 @@ public class GraphicOverlay extends View {
      * Removes a graphic from the overlay.
      */
     public void remove(Graphic graphic) {
-        synchronized (mLock) {
-            mGraphics.remove(graphic);
+        while (true) {
+            Graphic[] graphics = mGraphics.get();
+            int index = indexOf(graphics, graphic);
+            if (index < 0) {
+                break;
+            }
+            Graphic[] removed = new Graphic[graphics.length - 1];
+            System.arraycopy(graphics, 0, removed, 0, index);
+            System.arraycopy(graphics, index + 1, removed, index, removed.length - index);
+            if (mGraphics.compareAndSet(graphics, removed)) {
+                break;
+            }
         }
         postInvalidate();
     }
 
+    private static int indexOf(Graphic[] graphics, Graphic graphic) {
+        for (int i = 0; i < graphics.length; i++) {
+            if (graphics[i] == graphic) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Sets the camera attributes for size and facing direction, which informs how to transform
-     * image coordinates later.
+     * image coordinates later. Only call from the UI thread.
      */
     public void setCameraInfo(int previewWidth, int previewHeight, int facing) {
-        synchronized (mLock) {
-            mPreviewWidth = previewWidth;
-            mPreviewHeight = previewHeight;
-            mFacing = facing;
-        }
+        mPreviewWidth = previewWidth;
+        mPreviewHeight = previewHeight;
+        mFacing = facing;
+        updateTransform();
         postInvalidate();
     }
 
+    /**
+     * @return The current mapping from preview to view coordinates, or null while the view or the
+     * preview has no size yet. Safe to call from any thread.
+     */
+    public ViewTransform getTransform() {
+        return mTransform;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        updateTransform();
+    }
+
+    private void updateTransform() {
+        int width = getWidth();
+        int height = getHeight();
+        if (width == 0 || height == 0 || mPreviewWidth == 0 || mPreviewHeight == 0) {
+            mTransform = null;
+            return;
+        }
+        mTransform = ViewTransform.fromPreview(width, height, mPreviewWidth, mPreviewHeight,
+                mFacing == CameraSource.CAMERA_FACING_FRONT);
+    }
+
     /**
      * Draws the overlay with its associated graphic objects.
      */
@@ -174,15 +230,12 @@ public class GraphicOverlay extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        synchronized (mLock) {
-            if ((mPreviewWidth != 0) && (mPreviewHeight != 0)) {
-                mWidthScaleFactor = (float) canvas.getWidth() / (float) mPreviewWidth;
-                mHeightScaleFactor = (float) canvas.getHeight() / (float) mPreviewHeight;
-            }
-
-            for (Graphic graphic : mGraphics) {
-                graphic.draw(canvas);
-            }
+        mDrawTransform = mTransform;
+        if (mDrawTransform == null) {
+            return;
+        }
+        for (Graphic graphic : mGraphics.get()) {
+            graphic.draw(canvas);
         }
     }
 }
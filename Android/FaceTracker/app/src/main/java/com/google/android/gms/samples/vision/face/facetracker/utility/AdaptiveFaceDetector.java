@@ -0,0 +1,163 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.DetectionRatePolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceIdMatcher;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegionClassifier;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import java.util.List;
+
+/**
+ * Face detector that picks between an accurate and a fast detector for every frame, and skips
+ * frames altogether while the faces are centered and still. See {@link DetectionRatePolicy}.<p>
+ *
+ * Skipped frames report the faces found in the last detected frame, so trackers keep their faces
+ * instead of seeing them go missing. Those faces were not seen in the skipped frame, so
+ * {@link #isRepeat()} tells the processor not to filter or steer on them. The two detectors track faces separately and give out IDs
+ * from the same range, so the faces they find are handed on with IDs from a {@link FaceIdMatcher},
+ * which keep following the same person when detection switches between them.
+ */
+public class AdaptiveFaceDetector extends Detector<Face> {
+    // Which detector found a face, for the ID matcher
+    private static final int ACCURATE = 0;
+    private static final int FAST = 1;
+
+    private final Detector<Face> mAccurateDetector;
+    private final Detector<Face> mFastDetector;
+    private final DetectionRatePolicy mPolicy = new DetectionRatePolicy();
+    private final FaceRegionClassifier mClassifier = new FaceRegionClassifier();
+    private final FaceIdMatcher mIds = new FaceIdMatcher();
+    private FaceObservation[] mObservations = new FaceObservation[0];
+    // The faces of the last detected frame with their stable IDs, reused from frame to frame
+    private final SparseArray<Face> mLastFaces = new SparseArray<>();
+    private boolean mRepeat;
+    // Detector used for the last detected frame
+    private int mLastSource = ACCURATE;
+
+    public AdaptiveFaceDetector(Detector<Face> accurateDetector, Detector<Face> fastDetector) {
+        mAccurateDetector = accurateDetector;
+        mFastDetector = fastDetector;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        if (!mPolicy.shouldDetect()) {
+            mRepeat = true;
+            return mLastFaces;
+        }
+        mRepeat = false;
+
+        int source = mPolicy.getMode() == DetectionRatePolicy.Mode.ACCURATE ? ACCURATE : FAST;
+        Detector<Face> detector = source == ACCURATE ? mAccurateDetector : mFastDetector;
+        if (source == FAST && mLastSource != FAST && detector instanceof CroppingFaceDetector) {
+            // Its crop box is from before the accurate period, the face may have left it since
+            ((CroppingFaceDetector) detector).reset();
+        }
+        mLastSource = source;
+        SparseArray<Face> faces = mapIds(source, detector.detect(frame),
+                frame.getMetadata().getTimestampMillis());
+
+        // Faces are reported in the rotated frame, but the metadata has the size before rotation
+        Frame.Metadata metadata = frame.getMetadata();
+        int rotation = metadata.getRotation();
+        boolean swap = rotation == Frame.ROTATION_90 || rotation == Frame.ROTATION_270;
+        int width = swap ? metadata.getHeight() : metadata.getWidth();
+        int height = swap ? metadata.getWidth() : metadata.getHeight();
+
+        float sumX = 0;
+        float sumY = 0;
+        boolean allCentered = true;
+        for (int i = 0; i < faces.size(); i++) {
+            Face face = faces.valueAt(i);
+            float x = face.getPosition().x + face.getWidth() / 2;
+            float y = face.getPosition().y + face.getHeight() / 2;
+            sumX += x;
+            sumY += y;
+            if (mClassifier.classify(width, height, (int) x, (int) y) != FaceRegion.CENTER) {
+                allCentered = false;
+            }
+        }
+        int count = faces.size();
+        mPolicy.onDetections(count,
+                count == 0 ? 0 : sumX / count / width,
+                count == 0 ? 0 : sumY / count / height,
+                allCentered);
+        return faces;
+    }
+
+    /**
+     * @return The faces with their IDs replaced by stable ones, in {@link #mLastFaces}. Faces that
+     * keep the ID their detector gave them are passed on as they are, the others are copied with
+     * the new ID.
+     */
+    private SparseArray<Face> mapIds(int source, SparseArray<Face> detected, long timestampMs) {
+        int count = detected.size();
+        if (mObservations.length < count) {
+            mObservations = new FaceObservation[count];
+            for (int i = 0; i < count; i++) {
+                mObservations[i] = new FaceObservation();
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            MathUtility.toObservation(detected.valueAt(i), timestampMs, mObservations[i]);
+        }
+        mIds.map(source, mObservations, count);
+
+        SparseArray<Face> faces = mLastFaces;
+        faces.clear();
+        for (int i = 0; i < count; i++) {
+            Face face = detected.valueAt(i);
+            int id = mObservations[i].getId();
+            if (id != face.getId()) {
+                List<Landmark> landmarks = face.getLandmarks();
+                face = new Face(id, face.getPosition(), face.getWidth(), face.getHeight(),
+                        face.getEulerY(), face.getEulerZ(),
+                        landmarks.toArray(new Landmark[landmarks.size()]),
+                        face.getIsLeftEyeOpenProbability(), face.getIsRightEyeOpenProbability(),
+                        face.getIsSmilingProbability());
+            }
+            faces.put(id, face);
+        }
+        return faces;
+    }
+
+    /**
+     * @return Whether the last {@link #detect(Frame)} skipped the frame and repeated the faces of
+     * an earlier one. Only meaningful on the detector thread, e.g. in the processor.
+     */
+    public boolean isRepeat() {
+        return mRepeat;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mAccurateDetector.isOperational() && mFastDetector.isOperational();
+    }
+
+    /**
+     * Focuses the detector that last found the face, with the ID it knows the face by.
+     */
+    @Override
+    public boolean setFocus(int id) {
+        int accurateId = mIds.getSourceId(id, ACCURATE);
+        if (accurateId >= 0) {
+            return mAccurateDetector.setFocus(accurateId);
+        }
+        int fastId = mIds.getSourceId(id, FAST);
+        return fastId >= 0 && mFastDetector.setFocus(fastId);
+    }
+
+    @Override
+    public void release() {
+        mAccurateDetector.release();
+        mFastDetector.release();
+        super.release();
+    }
+}
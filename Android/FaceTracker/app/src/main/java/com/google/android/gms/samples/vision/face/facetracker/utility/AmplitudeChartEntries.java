@@ -0,0 +1,36 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import com.github.mikephil.charting.data.Entry;
+import com.google.android.gms.samples.vision.face.facetracker.core.AmplitudeHistory;
+
+import java.util.AbstractList;
+
+/**
+ * Read-only view of an {@link AmplitudeHistory} as chart entries, for handing to a LineDataSet.
+ * Nothing is copied: each entry is created once with its x index, and its value is read from the
+ * history when the chart asks for it. After adding to the history, tell the chart its data changed.
+ */
+public class AmplitudeChartEntries extends AbstractList<Entry> {
+    private final AmplitudeHistory mHistory;
+    private final Entry[] mEntries;
+
+    public AmplitudeChartEntries(AmplitudeHistory history) {
+        mHistory = history;
+        mEntries = new Entry[history.size()];
+        for (int i = 0; i < mEntries.length; i++) {
+            mEntries[i] = new Entry(0, i);
+        }
+    }
+
+    @Override
+    public Entry get(int index) {
+        Entry entry = mEntries[index];
+        entry.setVal(mHistory.get(index));
+        return entry;
+    }
+
+    @Override
+    public int size() {
+        return mEntries.length;
+    }
+}
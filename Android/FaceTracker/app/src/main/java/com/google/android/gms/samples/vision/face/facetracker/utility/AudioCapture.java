@@ -0,0 +1,152 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.PcmBlockListener;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Records 16 bit PCM from the microphone on its own thread and hands each block to the
+ * {@link PcmBlockListener}s on that thread. Blocks are read into a direct buffer allocated once, so
+ * capturing does not allocate, and the block rate only depends on the audio hardware.<p>
+ *
+ * Add all listeners before {@link #start()}.
+ */
+public class AudioCapture {
+    private static final String TAG = "AudioCapture";
+    public static final int DEFAULT_SAMPLE_RATE = 16000;
+    public static final int DEFAULT_BLOCK_MS = 20;
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final int mAudioSource;
+    private final int mBlockBytes;
+    private final ByteBuffer mBytes;
+    private final ShortBuffer mSamples;
+    private PcmBlockListener[] mListeners = new PcmBlockListener[0];
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+
+    /**
+     * Mono capture from the main microphone at the default rate and block size.
+     */
+    public AudioCapture() {
+        this(MediaRecorder.AudioSource.MIC, DEFAULT_SAMPLE_RATE, 1, DEFAULT_BLOCK_MS);
+    }
+
+    /**
+     * @param audioSource One of MediaRecorder.AudioSource
+     * @param sampleRate Frames per second
+     * @param channelCount 1 for mono or 2 for stereo
+     * @param blockMs Length of the blocks handed to the listeners
+     */
+    public AudioCapture(int audioSource, int sampleRate, int channelCount, int blockMs) {
+        mAudioSource = audioSource;
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mBlockBytes = sampleRate * blockMs / 1000 * channelCount * 2;
+        mBytes = ByteBuffer.allocateDirect(mBlockBytes).order(ByteOrder.nativeOrder());
+        mSamples = mBytes.asShortBuffer();
+    }
+
+    public void addListener(PcmBlockListener listener) {
+        PcmBlockListener[] listeners = new PcmBlockListener[mListeners.length + 1];
+        System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+        listeners[mListeners.length] = listener;
+        mListeners = listeners;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * Starts recording, unless it already is.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                capture();
+            }
+        }, "AudioCapture");
+        mThread.start();
+    }
+
+    /**
+     * Stops recording and waits for the capture thread to finish.
+     */
+    public synchronized void stop() {
+        if (mThread == null) {
+            return;
+        }
+        mRunning = false;
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    private void capture() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        int channelConfig = mChannelCount == 2
+                ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
+        int minBufferBytes = AudioRecord.getMinBufferSize(mSampleRate, channelConfig,
+                AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferBytes <= 0) {
+            Log.e(TAG, "Recording at " + mSampleRate + "Hz with " + mChannelCount
+                    + " channels is not supported");
+            return;
+        }
+        AudioRecord record = new AudioRecord(mAudioSource, mSampleRate, channelConfig,
+                AudioFormat.ENCODING_PCM_16BIT, Math.max(minBufferBytes, 4 * mBlockBytes));
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "Could not open the microphone");
+            record.release();
+            return;
+        }
+
+        PcmBlockListener[] listeners = mListeners;
+        try {
+            record.startRecording();
+            while (mRunning) {
+                mBytes.clear();
+                int read = record.read(mBytes, mBlockBytes);
+                if (read < 0) {
+                    Log.e(TAG, "Reading from the microphone failed with " + read);
+                    break;
+                }
+                long timestampMs = SystemClock.elapsedRealtime();
+                // Whole frames only
+                int samples = read / 2 / mChannelCount * mChannelCount;
+                for (PcmBlockListener listener : listeners) {
+                    mSamples.limit(samples).position(0);
+                    listener.onBlock(mSamples, mChannelCount, mSampleRate, timestampMs);
+                }
+            }
+            record.stop();
+        } finally {
+            record.release();
+        }
+    }
+}
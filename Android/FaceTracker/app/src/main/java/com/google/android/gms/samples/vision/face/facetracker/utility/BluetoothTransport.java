@@ -0,0 +1,90 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * RFCOMM connection to the stand. Only used from the command writer thread, except for
+ * {@link #close()}, which aborts a connect in progress when the dispatcher stops.
+ */
+public class BluetoothTransport implements CommandTransport {
+    private static final String TAG = "BluetoothTransport";
+    //private static final UUID SERVICE_UUID = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb"); //Standard SerialPortService ID
+    private static final UUID SERVICE_UUID = UUID.fromString("94f39d29-7d6d-437d-973b-fba39e49d4ee");
+
+    private final String mAddress;
+    private volatile BluetoothSocket mSocket;
+
+    /**
+     * @param address MAC address of the stand
+     */
+    public BluetoothTransport(String address) {
+        mAddress = address;
+    }
+
+    @Override
+    public void open() throws IOException {
+        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+        if (adapter == null || !adapter.isEnabled()) {
+            throw new IOException("Bluetooth is not enabled");
+        }
+        BluetoothDevice device = adapter.getRemoteDevice(mAddress);
+        BluetoothSocket socket = device.createRfcommSocketToServiceRecord(SERVICE_UUID);
+        synchronized (this) {
+            if (Thread.currentThread().isInterrupted()) {
+                socket.close();
+                throw new InterruptedIOException("Interrupted before connecting");
+            }
+            // Published before connecting, so close() can abort the connect
+            mSocket = socket;
+        }
+        socket.connect();
+        Log.i(TAG, "Connected to " + mAddress);
+    }
+
+    @Override
+    public boolean isOpen() {
+        BluetoothSocket socket = mSocket;
+        return socket != null && socket.isConnected();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return getSocket().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return getSocket().getOutputStream();
+    }
+
+    private BluetoothSocket getSocket() throws IOException {
+        BluetoothSocket socket = mSocket;
+        if (socket == null) {
+            throw new IOException("Not connected");
+        }
+        return socket;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not close the socket", e);
+            }
+        }
+        mSocket = null;
+    }
+}
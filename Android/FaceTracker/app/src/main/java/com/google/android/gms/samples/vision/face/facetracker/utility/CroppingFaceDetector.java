@@ -0,0 +1,144 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.graphics.ImageFormat;
+import android.graphics.PointF;
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceCrop;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+import com.google.android.gms.vision.face.Landmark;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Face detector that only searches a padded box around the face while a single face is locked,
+ * see {@link FaceCrop}. The box is copied out of the camera frame into a smaller frame, and the
+ * faces found in it are moved back into full frame coordinates, so trackers and graphics can't
+ * tell the difference.<p>
+ *
+ * Cropped frames are searched by a separate detector which should only look for the prominent face
+ * and not track faces across frames. The face found there keeps the ID the full frame detector gave
+ * to the locked face.
+ */
+public class CroppingFaceDetector extends Detector<Face> {
+    private static final Landmark[] NO_LANDMARKS = new Landmark[0];
+
+    private final Detector<Face> mFullDetector;
+    private final Detector<Face> mCropDetector;
+    private final FaceCrop mCrop = new FaceCrop();
+    private int mLockedId;
+
+    // NV21 buffer the crop is copied into, sized for a whole frame so it never needs to grow
+    private byte[] mCropData;
+    private ByteBuffer mCropBuffer;
+
+    /**
+     * @param fullDetector Detector used on whole frames
+     * @param cropDetector Detector used on cropped frames, set up for the prominent face only
+     */
+    public CroppingFaceDetector(Detector<Face> fullDetector, Detector<Face> cropDetector) {
+        mFullDetector = fullDetector;
+        mCropDetector = cropDetector;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        Frame.Metadata metadata = frame.getMetadata();
+        int width = metadata.getWidth();
+        int height = metadata.getHeight();
+
+        if (!mCrop.prepare(width, height, metadata.getRotation())) {
+            SparseArray<Face> faces = mFullDetector.detect(frame);
+            if (faces.size() == 1) {
+                Face face = faces.valueAt(0);
+                mLockedId = faces.keyAt(0);
+                mCrop.onFullScan(1, face.getPosition().x, face.getPosition().y,
+                        face.getWidth(), face.getHeight());
+            } else {
+                mCrop.onFullScan(faces.size(), 0, 0, 0, 0);
+            }
+            return faces;
+        }
+
+        SparseArray<Face> cropFaces = mCropDetector.detect(crop(frame));
+        SparseArray<Face> faces = new SparseArray<>(1);
+        if (cropFaces.size() == 0) {
+            // Lost it, the next frame gets a full search
+            mCrop.onCropScan(false, 0, 0, 0, 0);
+            return faces;
+        }
+
+        Face face = cropFaces.valueAt(0);
+        float x = face.getPosition().x + mCrop.getOffsetX();
+        float y = face.getPosition().y + mCrop.getOffsetY();
+        mCrop.onCropScan(true, x, y, face.getWidth(), face.getHeight());
+        faces.append(mLockedId, new Face(mLockedId, new PointF(x, y), face.getWidth(),
+                face.getHeight(), face.getEulerY(), face.getEulerZ(), NO_LANDMARKS,
+                face.getIsLeftEyeOpenProbability(), face.getIsRightEyeOpenProbability(),
+                face.getIsSmilingProbability()));
+        return faces;
+    }
+
+    /**
+     * Copies the crop box out of the frame's luminance plane into a smaller NV21 frame.
+     */
+    private Frame crop(Frame frame) {
+        Frame.Metadata metadata = frame.getMetadata();
+        int frameWidth = metadata.getWidth();
+        int frameSize = frameWidth * metadata.getHeight();
+        if (mCropData == null || mCropData.length < frameSize * 3 / 2) {
+            mCropData = new byte[frameSize * 3 / 2];
+            // Detection only looks at luminance, so the chroma is left neutral grey
+            Arrays.fill(mCropData, (byte) 128);
+            mCropBuffer = ByteBuffer.wrap(mCropData);
+        }
+
+        ByteBuffer source = frame.getGrayscaleImageData();
+        int left = mCrop.getLeft();
+        int top = mCrop.getTop();
+        int width = mCrop.getWidth();
+        int height = mCrop.getHeight();
+        for (int row = 0; row < height; row++) {
+            source.position((top + row) * frameWidth + left);
+            source.get(mCropData, row * width, width);
+        }
+        source.rewind();
+        // The chroma of the crop starts right after its luminance
+        Arrays.fill(mCropData, width * height, width * height * 3 / 2, (byte) 128);
+
+        return new Frame.Builder()
+                .setImageData(mCropBuffer, width, height, ImageFormat.NV21)
+                .setId(metadata.getId())
+                .setTimestampMillis(metadata.getTimestampMillis())
+                .setRotation(metadata.getRotation())
+                .build();
+    }
+
+    /**
+     * Drops the lock, so the next frame gets a full search. Call it when the detector has not seen
+     * the frames for a while, since the face may have moved out of the box since.
+     */
+    public void reset() {
+        mCrop.reset();
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mFullDetector.isOperational() && mCropDetector.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mFullDetector.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        mFullDetector.release();
+        mCropDetector.release();
+        super.release();
+    }
+}
@@ -1,43 +1,51 @@
-package com.google.android.gms.samples.vision.face.facetracker.utility;
-
-import android.media.MediaRecorder;
-
-import java.io.IOException;
-
-public class SoundMeter {
-
-    private MediaRecorder mRecorder = null;
-
-    public void start() {
-        if (mRecorder == null) {
-            mRecorder = new MediaRecorder();
-            mRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            mRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-            mRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-            mRecorder.setOutputFile("/dev/null");
-            try {
-                mRecorder.prepare();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            mRecorder.start();
-        }
-    }
-
-    public void stop() {
-        if (mRecorder != null) {
-            mRecorder.stop();
-            mRecorder.release();
-            mRecorder = null;
-        }
-    }
-
-    public double getAmplitude() {
-        if (mRecorder != null) {
-            return mRecorder.getMaxAmplitude();
-        } else {
-            return 0;
-        }
-
-    }
-}
\ No newline at end of file
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.AudioBlockAnalyzer;
+import com.google.android.gms.samples.vision.face.facetracker.core.AudioLevels;
+import com.google.android.gms.samples.vision.face.facetracker.core.PcmBlockListener;
+
+public class SoundMeter {
+
+    private final AudioCapture mCapture;
+    private final AudioBlockAnalyzer mAnalyzer = new AudioBlockAnalyzer();
+
+    public SoundMeter() {
+        this(new AudioCapture());
+    }
+
+    public SoundMeter(AudioCapture capture) {
+        mCapture = capture;
+        mCapture.addListener(mAnalyzer);
+    }
+
+    /**
+     * Adds something else to be fed every block of audio. Only call before {@link #start()}.
+     */
+    public void addListener(PcmBlockListener listener) {
+        mCapture.addListener(listener);
+    }
+
+    public void start() {
+        mCapture.start();
+    }
+
+    public void stop() {
+        mCapture.stop();
+    }
+
+    /**
+     * @return The loudest sample since the last call, from 0 to 32767
+     */
+    public double getAmplitude() {
+        return mAnalyzer.getPeakAmplitude();
+    }
+
+    /**
+     * Copies the levels of the latest block of audio.
+     *
+     * @return False if nothing has been recorded yet
+     */
+    public boolean getLevels(AudioLevels out) {
+        return mAnalyzer.getLevels(out);
+    }
+}
@@ -0,0 +1,88 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.TargetSelector;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Sits in front of the face trackers' MultiProcessor and picks the one face the stand should follow
+ * in each frame with a {@link TargetSelector}, before handing the detections on. The listener gets
+ * a single target per frame to steer towards, however many faces there are.<p>
+ *
+ * With a {@link PipelineLatency} set, the time taken to handle each frame, trackers included, is
+ * recorded as the {@link PipelineLatency.Stage#TRACKING} latency.
+ */
+public class TargetProcessor implements Detector.Processor<Face> {
+    public interface Listener {
+        /**
+         * Called on the detector thread once per frame, before the trackers are updated.
+         *
+         * @param target The face to steer towards, or null if no face was detected
+         */
+        void onTarget(Detector.Detections<Face> detections, Face target);
+    }
+
+    private final Detector.Processor<Face> mNext;
+    private final TargetSelector mSelector;
+    private final Listener mListener;
+    private PipelineLatency mLatency;
+
+    private final FaceObservation[] mObservations =
+            new FaceObservation[TargetSelector.MAX_FACES];
+    private final Face[] mFaces = new Face[TargetSelector.MAX_FACES];
+
+    public TargetProcessor(Detector.Processor<Face> next, TargetSelector selector,
+                           Listener listener) {
+        mNext = next;
+        mSelector = selector;
+        mListener = listener;
+        for (int i = 0; i < mObservations.length; i++) {
+            mObservations[i] = new FaceObservation();
+        }
+    }
+
+    /**
+     * @param latency Where to record the time taken per frame, or null
+     */
+    public void setLatency(PipelineLatency latency) {
+        mLatency = latency;
+    }
+
+    @Override
+    public void receiveDetections(Detector.Detections<Face> detections) {
+        long startNs = System.nanoTime();
+        Frame.Metadata metadata = detections.getFrameMetadata();
+        long timestampMs = metadata.getTimestampMillis();
+        // Faces are in upright coordinates, the frame size is of the unrotated buffer
+        boolean rotated = metadata.getRotation() % 2 == 1;
+        float width = rotated ? metadata.getHeight() : metadata.getWidth();
+        float height = rotated ? metadata.getWidth() : metadata.getHeight();
+
+        SparseArray<Face> faces = detections.getDetectedItems();
+        int count = Math.min(faces.size(), mObservations.length);
+        for (int i = 0; i < count; i++) {
+            mFaces[i] = faces.valueAt(i);
+            MathUtility.toObservation(mFaces[i], timestampMs, mObservations[i]);
+        }
+        int target = mSelector.select(mObservations, count, width, height);
+        mListener.onTarget(detections, target >= 0 ? mFaces[target] : null);
+        for (int i = 0; i < count; i++) {
+            mFaces[i] = null;
+        }
+
+        mNext.receiveDetections(detections);
+        if (mLatency != null) {
+            mLatency.record(PipelineLatency.Stage.TRACKING, startNs, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void release() {
+        mNext.release();
+    }
+}
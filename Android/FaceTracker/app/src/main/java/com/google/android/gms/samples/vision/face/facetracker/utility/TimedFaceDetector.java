@@ -0,0 +1,47 @@
+package com.google.android.gms.samples.vision.face.facetracker.utility;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.face.Face;
+
+/**
+ * Face detector that records how long the detector it wraps takes for each frame as the
+ * {@link PipelineLatency.Stage#DETECTION} latency. Wrap the outermost detector with it, so the
+ * time includes everything that happens before the detections are processed.
+ */
+public class TimedFaceDetector extends Detector<Face> {
+    private final Detector<Face> mDetector;
+    private final PipelineLatency mLatency;
+
+    public TimedFaceDetector(Detector<Face> detector, PipelineLatency latency) {
+        mDetector = detector;
+        mLatency = latency;
+    }
+
+    @Override
+    public SparseArray<Face> detect(Frame frame) {
+        long startNs = System.nanoTime();
+        SparseArray<Face> faces = mDetector.detect(frame);
+        mLatency.record(PipelineLatency.Stage.DETECTION, startNs, System.nanoTime());
+        return faces;
+    }
+
+    @Override
+    public boolean isOperational() {
+        return mDetector.isOperational();
+    }
+
+    @Override
+    public boolean setFocus(int id) {
+        return mDetector.setFocus(id);
+    }
+
+    @Override
+    public void release() {
+        mDetector.release();
+        super.release();
+    }
+}
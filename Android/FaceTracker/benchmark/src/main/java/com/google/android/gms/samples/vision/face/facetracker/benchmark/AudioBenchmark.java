@@ -0,0 +1,80 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.AudioBlockAnalyzer;
+import com.google.android.gms.samples.vision.face.facetracker.core.AudioLevels;
+import com.google.android.gms.samples.vision.face.facetracker.core.BeatTracker;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.PcmGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of processing one block of captured audio, 20ms of 16kHz mono, on the capture thread. To
+ * keep up in real time each block has to take well under 20ms, i.e. 20,000,000ns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AudioBenchmark {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK_FRAMES = SAMPLE_RATE * 20 / 1000;
+    private static final int BLOCKS = 256;
+
+    private ShortBuffer mPcm;
+    private int mBlock;
+    private long mTimeMs;
+
+    private final AudioBlockAnalyzer mAnalyzer = new AudioBlockAnalyzer();
+    private final AudioLevels mLevels = new AudioLevels();
+    private BeatTracker mTracker;
+
+    @Setup
+    public void setup() {
+        mPcm = ShortBuffer.allocate(BLOCK_FRAMES * BLOCKS);
+        PcmGenerator generator = new PcmGenerator(SAMPLE_RATE, 1, 42);
+        generator.setBeat(120, 0.5f);
+        generator.fill(mPcm, BLOCK_FRAMES * BLOCKS);
+        mTracker = new BeatTracker(SAMPLE_RATE);
+    }
+
+    private ShortBuffer nextBlock() {
+        mBlock = (mBlock + 1) % BLOCKS;
+        mTimeMs += 20;
+        mPcm.limit((mBlock + 1) * BLOCK_FRAMES).position(mBlock * BLOCK_FRAMES);
+        return mPcm;
+    }
+
+    /**
+     * RMS, peak and onset energy of a block, published for other threads.
+     */
+    @Benchmark
+    public AudioLevels analyze() {
+        mAnalyzer.onBlock(nextBlock(), 1, SAMPLE_RATE, mTimeMs);
+        mAnalyzer.getLevels(mLevels);
+        return mLevels;
+    }
+
+    /**
+     * Onset detection on every block, plus the tempo and phase estimate that runs on every 12th or
+     * 13th block, averaged over the blocks.
+     */
+    @Benchmark
+    public long trackBeats() {
+        mTracker.onBlock(nextBlock(), 1, SAMPLE_RATE, mTimeMs);
+        return mTracker.getNextBeatMs(mTimeMs);
+    }
+}
@@ -0,0 +1,57 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.BeatTracker;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.PcmGenerator;
+
+import java.nio.ShortBuffer;
+import java.util.Locale;
+
+/**
+ * Feeds synthetic beats at a range of tempos through the {@link BeatTracker} in 20ms blocks, like
+ * AudioCapture does, and prints the tempo it settles on, how sure it is, and how far its predicted
+ * beats are from the real ones.
+ */
+public class BeatDetection {
+    private static final float[] TEMPOS = {70f, 90f, 120f, 150f, 175f};
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK_MS = 20;
+    private static final int DURATION_MS = 20000;
+    // Predictions are only checked once the tracker has had this long to settle
+    private static final int SETTLE_MS = 8000;
+
+    public static void main(String[] args) {
+        System.out.println("  bpm  detected  confidence  mean beat error");
+        for (float bpm : TEMPOS) {
+            run(bpm);
+        }
+    }
+
+    private static void run(float bpm) {
+        PcmGenerator generator = new PcmGenerator(SAMPLE_RATE, 1, 42);
+        generator.setNoise(0.02f);
+        generator.setBeat(bpm, 0.4f);
+        BeatTracker tracker = new BeatTracker(SAMPLE_RATE);
+        ShortBuffer block = ShortBuffer.allocate(SAMPLE_RATE * BLOCK_MS / 1000);
+        double periodMs = 60000.0 / bpm;
+
+        double errorSum = 0;
+        int predictions = 0;
+        for (long timeMs = BLOCK_MS; timeMs <= DURATION_MS; timeMs += BLOCK_MS) {
+            block.clear();
+            generator.fill(block, block.capacity());
+            block.flip();
+            tracker.onBlock(block, 1, SAMPLE_RATE, timeMs);
+
+            long predictedMs = tracker.getNextBeatMs(timeMs);
+            if (timeMs >= SETTLE_MS && predictedMs >= 0) {
+                // Distance to the nearest real beat
+                double phase = predictedMs % periodMs;
+                errorSum += Math.min(phase, periodMs - phase);
+                predictions++;
+            }
+        }
+        System.out.println(String.format(Locale.US, "%5.0f  %8.1f  %10.2f  %13.1fms",
+                bpm, tracker.getBpm(), tracker.getConfidence(),
+                predictions > 0 ? errorSum / predictions : Double.NaN));
+    }
+}
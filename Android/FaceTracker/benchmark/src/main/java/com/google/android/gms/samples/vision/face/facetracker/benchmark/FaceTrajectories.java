@@ -0,0 +1,66 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
+
+/**
+ * Synthetic face paths for feeding the steering code. Each face drifts around the preview on its
+ * own Lissajous curve, so over a run it passes through every region of the screen. All positions
+ * are computed up front so the benchmarks only measure the code under test.
+ */
+public class FaceTrajectories {
+    // Portrait preview, as the detector sees it with the phone upright
+    public static final int PREVIEW_WIDTH = 480;
+    public static final int PREVIEW_HEIGHT = 640;
+    public static final int VIEW_WIDTH = 1080;
+    public static final int VIEW_HEIGHT = 1440;
+    // Front camera, like the app
+    public static final ViewTransform VIEW = ViewTransform.fromPreview(VIEW_WIDTH, VIEW_HEIGHT,
+            PREVIEW_WIDTH, PREVIEW_HEIGHT, true);
+
+    public static final int FRAME_INTERVAL_MS = 33;
+
+    private static final float FACE_SIZE = 120f;
+
+    private final int mFaces;
+    private final int mFrames;
+    // Indexed by [frame * faces + face]
+    private final float[] mX;
+    private final float[] mY;
+
+    public FaceTrajectories(int faces, int frames) {
+        mFaces = faces;
+        mFrames = frames;
+        mX = new float[faces * frames];
+        mY = new float[faces * frames];
+
+        float rangeX = PREVIEW_WIDTH - FACE_SIZE;
+        float rangeY = PREVIEW_HEIGHT - FACE_SIZE;
+        for (int frame = 0; frame < frames; frame++) {
+            for (int face = 0; face < faces; face++) {
+                double t = 2 * Math.PI * frame / frames;
+                double phase = face * 0.7;
+                int i = frame * faces + face;
+                mX[i] = (float) (rangeX / 2 * (1 + Math.sin(3 * t + phase)));
+                mY[i] = (float) (rangeY / 2 * (1 + Math.sin(2 * t + 2 * phase)));
+            }
+        }
+    }
+
+    public int getFaces() {
+        return mFaces;
+    }
+
+    public int getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Fills in the observation for one face in one frame.
+     */
+    public FaceObservation get(int frame, int face, FaceObservation out) {
+        int i = (frame % mFrames) * mFaces + face;
+        out.set(face, frame * FRAME_INTERVAL_MS, mX[i], mY[i], FACE_SIZE, FACE_SIZE);
+        return out;
+    }
+}
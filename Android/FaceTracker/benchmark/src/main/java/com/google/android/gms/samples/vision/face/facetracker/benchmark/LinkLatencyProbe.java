@@ -0,0 +1,63 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandDispatcher;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.StreamCommandWriter;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.LoopbackStand;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Sends timestamped commands through the same {@link CommandDispatcher} the app uses and prints
+ * the latency and clock offset worked out from the acknowledgements. By default it talks to a
+ * {@link LoopbackStand} with a known USB delay and clock offset, and drops the connection halfway
+ * through to check that acks keep coming after reconnecting. Pass {@code memory} to reach the
+ * stand-in over an in-memory transport instead of TCP, or a host and port to talk to a server
+ * listening on TCP.
+ */
+public class LinkLatencyProbe {
+    private static final int COMMANDS = 400;
+    private static final int INTERVAL_MS = 20;
+    private static final int USB_DELAY_MS = 3;
+    private static final long CLOCK_OFFSET_US = 1234567;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        StandLink link = StandLink.create(args, USB_DELAY_MS, CLOCK_OFFSET_US);
+        LoopbackStand stand = link.getStand();
+
+        CommandLatency latency = new CommandLatency();
+        PipelineLatency pipeline = new PipelineLatency();
+        StreamCommandWriter writer = new StreamCommandWriter(link.getTransport());
+        writer.setLatency(latency);
+        CommandDispatcher dispatcher = new CommandDispatcher(writer);
+        dispatcher.setLatency(pipeline);
+        dispatcher.start();
+
+        for (int i = 0; i < COMMANDS; i++) {
+            dispatcher.send(i % 2 == 0 ? Command.LEFT : Command.STOP, 0);
+            Thread.sleep(INTERVAL_MS);
+            if (stand != null && i == COMMANDS / 2) {
+                stand.closeClient();
+            }
+        }
+        Thread.sleep(200);
+        dispatcher.stop();
+
+        StringBuilder summary = new StringBuilder();
+        pipeline.appendSummary(summary);
+        latency.appendSummary(summary);
+        System.out.print(summary);
+        System.out.println(String.format(Locale.US, "%d commands sent, %d acked",
+                COMMANDS, latency.getTotalCount()));
+        if (stand != null) {
+            System.out.println(String.format(Locale.US,
+                    "stand received %d, clock offset %.3f ms, estimated %.3f ms, usb delay %d ms",
+                    stand.getCommandCount(), CLOCK_OFFSET_US / 1000.0,
+                    latency.getClockOffsetUs() / 1000.0, USB_DELAY_MS));
+        }
+        link.stop();
+    }
+}
@@ -0,0 +1,121 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandDispatcher;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.PipelineLatency;
+import com.google.android.gms.samples.vision.face.facetracker.core.StreamCommandWriter;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.LoopbackStand;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Sends commands through the {@link CommandDispatcher} as fast as it will write them for a while,
+ * and a second after each connection comes up, either drops it or stalls it as if it went
+ * half-open. Prints the command throughput and how long it took to be connected again after each
+ * kind of failure. Takes the same arguments as {@link LinkLatencyProbe}; against a real server
+ * only the throughput and acks are reported, since the connection can't be broken from here.
+ */
+public class LinkSoakTest {
+    private static final int DURATION_MS = 10000;
+    private static final int FAIL_AFTER_MS = 1000;
+    private static final int DROPPED = 0;
+    private static final int STALLED = 1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        StandLink link = StandLink.create(args, 0, 0);
+        final LoopbackStand stand = link.getStand();
+
+        CommandLatency latency = new CommandLatency();
+        PipelineLatency pipeline = new PipelineLatency();
+        StreamCommandWriter writer = new StreamCommandWriter(link.getTransport());
+        writer.setLatency(latency);
+        CommandDispatcher dispatcher = new CommandDispatcher(writer);
+        dispatcher.setLatency(pipeline);
+        // When the connection was last broken, and which way, guarded by itself
+        final long[] failedNs = new long[1];
+        final int[] failure = new int[1];
+        // Per kind of failure: count, total and longest time to reconnect
+        final long[][] reconnects = new long[2][3];
+        final long[] connectedNs = new long[1];
+        dispatcher.setListener(new CommandDispatcher.Listener() {
+            @Override
+            public void onConnected() {
+                synchronized (failedNs) {
+                    long nowNs = System.nanoTime();
+                    if (failedNs[0] != 0) {
+                        long[] stats = reconnects[failure[0]];
+                        long tookNs = nowNs - failedNs[0];
+                        stats[0]++;
+                        stats[1] += tookNs;
+                        stats[2] = Math.max(stats[2], tookNs);
+                        failedNs[0] = 0;
+                    }
+                    connectedNs[0] = nowNs;
+                }
+            }
+
+            @Override
+            public void onConnectionFailed(int attempt, long retryInMs, IOException e) {
+            }
+        });
+        dispatcher.start();
+
+        long startMs = System.currentTimeMillis();
+        int sent = 0;
+        int failures = 0;
+        while (System.currentTimeMillis() - startMs < DURATION_MS) {
+            // Alternating moves and LED commands, so the queue always has something new to write
+            // instead of coalescing everything into one command
+            dispatcher.send(sent % 2 == 0 ? Command.LEFT : Command.STOP, 0);
+            dispatcher.send(sent % 2 == 0 ? Command.LED_ON : Command.LED_OFF, 0);
+            sent += 2;
+            if (dispatcher.getPendingCount() > 2) {
+                Thread.yield();
+            }
+            if (stand == null || dispatcher.getState() != CommandDispatcher.State.CONNECTED) {
+                continue;
+            }
+            synchronized (failedNs) {
+                long nowNs = System.nanoTime();
+                if (failedNs[0] == 0 && connectedNs[0] != 0
+                        && nowNs - connectedNs[0] >= FAIL_AFTER_MS * 1000000L) {
+                    failedNs[0] = nowNs;
+                    failure[0] = failures++ % 2;
+                    if (failure[0] == DROPPED) {
+                        stand.closeClient();
+                    } else {
+                        stand.stallClient();
+                    }
+                }
+            }
+        }
+        long elapsedMs = System.currentTimeMillis() - startMs;
+        Thread.sleep(200);
+        dispatcher.stop();
+
+        long written = pipeline.get(PipelineLatency.Stage.WRITE).getCount();
+        StringBuilder summary = new StringBuilder();
+        pipeline.appendSummary(summary);
+        latency.appendSummary(summary);
+        System.out.print(summary);
+        System.out.println(String.format(Locale.US,
+                "%d commands queued, %d written in %.1f s (%.0f/s), %d acked",
+                sent, written, elapsedMs / 1000.0, written * 1000.0 / elapsedMs,
+                latency.getTotalCount()));
+        if (stand != null) {
+            System.out.println(String.format(Locale.US, "stand received %d",
+                    stand.getCommandCount()));
+            printReconnects("dropped", reconnects[DROPPED]);
+            printReconnects("stalled", reconnects[STALLED]);
+        }
+        link.stop();
+    }
+
+    private static void printReconnects(String failure, long[] stats) {
+        System.out.println(String.format(Locale.US,
+                "%s %d times, back after mean %.1f ms, max %.1f ms", failure, stats[0],
+                stats[0] == 0 ? 0 : stats[1] / 1e6 / stats[0], stats[2] / 1e6));
+    }
+}
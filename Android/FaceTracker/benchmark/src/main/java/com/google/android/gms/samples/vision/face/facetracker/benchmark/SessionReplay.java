@@ -0,0 +1,218 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Clock;
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandGovernor;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandSink;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceMotionFilter;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.ProportionalSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.RingSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.SessionReader;
+import com.google.android.gms.samples.vision.face.facetracker.core.SessionRecorder;
+import com.google.android.gms.samples.vision.face.facetracker.core.SteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.TargetSelector;
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Feeds a session recorded with {@link SessionRecorder} back through the steering code, on the
+ * recording's own clock, and compares the commands each steering policy sends with the ones the
+ * app's steering sent. The target face is the one the app picked. The commands the sound
+ * acquisition and rhythm code sent in between are left out of the comparison, so the steering
+ * commands line up one for one.<p>
+ *
+ * Without a file, a synthetic session is recorded first by steering towards faces from
+ * {@link FaceTrajectories} the way the app does with {@code PROPORTIONAL_STEERING}, so replaying it
+ * with the proportional policy and prediction must give back exactly the recorded commands.
+ */
+public class SessionReplay {
+    private static final int SYNTHETIC_FACES = 2;
+    private static final int SYNTHETIC_FRAMES = 3000;
+
+    /**
+     * Time of the record being replayed.
+     */
+    private static class ReplayClock implements Clock {
+        long mTimeMs;
+
+        @Override
+        public long getTimeMs() {
+            return mTimeMs;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File file;
+        if (args.length > 0) {
+            file = new File(args[0]);
+        } else {
+            file = File.createTempFile("session", ".ftrec");
+            file.deleteOnExit();
+            recordSynthetic(file);
+        }
+
+        List<Integer> recorded = new ArrayList<>();
+        int others = 0;
+        int frames = 0;
+        int faces = 0;
+        int targets = 0;
+        long durationMs = 0;
+        SessionReader reader = new SessionReader(file);
+        try {
+            while (reader.next()) {
+                durationMs = reader.getTimeMs();
+                switch (reader.getType()) {
+                    case SessionRecorder.FRAME:
+                        frames++;
+                        break;
+                    case SessionRecorder.FACE:
+                        faces++;
+                        targets += reader.isTarget() ? 1 : 0;
+                        break;
+                    case SessionRecorder.COMMAND:
+                        if (reader.getSource() == SessionRecorder.SOURCE_STEERING) {
+                            recorded.add(pack(reader.getCommand(), reader.getDurationMs()));
+                        } else {
+                            others++;
+                        }
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.println(String.format(Locale.US,
+                "%s: %.1f s, %d frames, %d faces, %d frames with a target, %d steering commands, "
+                        + "%d other commands",
+                args.length > 0 ? file : "synthetic session", durationMs / 1000.0, frames, faces,
+                targets, recorded.size(), others));
+        print("recorded", recorded, recorded);
+
+        print("proportional, predicted",
+                replay(file, new ProportionalSteeringPolicy(), true), recorded);
+        print("proportional", replay(file, new ProportionalSteeringPolicy(), false), recorded);
+        print("ring, predicted", replay(file, new RingSteeringPolicy(), true), recorded);
+        print("ring", replay(file, new RingSteeringPolicy(), false), recorded);
+    }
+
+    /**
+     * @return The commands the policy sends through a {@link CommandGovernor}, steering towards
+     * the recorded targets
+     */
+    private static List<Integer> replay(File file, SteeringPolicy policy, boolean predict)
+            throws IOException {
+        final List<Integer> commands = new ArrayList<>();
+        ReplayClock clock = new ReplayClock();
+        FaceSteering steering = new FaceSteering(policy, new CommandGovernor(new CommandSink() {
+            @Override
+            public void send(Command command, int durationMs) {
+                commands.add(pack(command, durationMs));
+            }
+        }, clock));
+        if (predict) {
+            steering.setMotionFilter(new FaceMotionFilter());
+        }
+
+        FaceObservation face = new FaceObservation();
+        ViewTransform view = null;
+        SessionReader reader = new SessionReader(file);
+        try {
+            while (reader.next()) {
+                clock.mTimeMs = reader.getTimeMs();
+                if (reader.getType() == SessionRecorder.FRAME) {
+                    view = reader.getTransform(view);
+                } else if (reader.isTarget() && view != null) {
+                    steering.update(reader.getFace(face), view);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return commands;
+    }
+
+    /**
+     * Records faces moving along their trajectories, steering towards one of them with the
+     * proportional policy and recording the commands that get through the governor.
+     */
+    private static void recordSynthetic(File file) throws IOException {
+        final ReplayClock clock = new ReplayClock();
+        final SessionRecorder recorder = new SessionRecorder(file, clock);
+        FaceSteering steering = new FaceSteering(new ProportionalSteeringPolicy(),
+                new CommandGovernor(new CommandSink() {
+                    @Override
+                    public void send(Command command, int durationMs) {
+                        recorder.recordCommand(command, durationMs,
+                                SessionRecorder.SOURCE_STEERING);
+                    }
+                }, clock));
+        steering.setMotionFilter(new FaceMotionFilter());
+        TargetSelector selector = new TargetSelector(TargetSelector.Strategy.CLOSEST_TO_CENTER);
+        FaceTrajectories trajectories = new FaceTrajectories(SYNTHETIC_FACES, SYNTHETIC_FRAMES);
+        FaceObservation[] faces = new FaceObservation[SYNTHETIC_FACES];
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = new FaceObservation();
+        }
+
+        try {
+            for (int frame = 0; frame < SYNTHETIC_FRAMES; frame++) {
+                clock.mTimeMs = frame * FaceTrajectories.FRAME_INTERVAL_MS;
+                for (int i = 0; i < faces.length; i++) {
+                    trajectories.get(frame, i, faces[i]);
+                }
+                int target = selector.select(faces, faces.length,
+                        FaceTrajectories.PREVIEW_WIDTH, FaceTrajectories.PREVIEW_HEIGHT);
+                recorder.recordFrame(faces[0].getTimestampMs(), faces.length,
+                        FaceTrajectories.VIEW);
+                for (int i = 0; i < faces.length; i++) {
+                    recorder.recordFace(faces[i], i == target, 0f, 0f, 1f, 1f, 0.5f);
+                }
+                if (target >= 0) {
+                    steering.update(faces[target], FaceTrajectories.VIEW);
+                }
+            }
+        } finally {
+            recorder.close();
+        }
+    }
+
+    private static int pack(Command command, int durationMs) {
+        return (command == null ? 0 : command.getOpcode()) << 16 | durationMs;
+    }
+
+    /**
+     * Prints how many of each command were sent, and how many of them were the same as the
+     * recorded command at the same position.
+     */
+    private static void print(String name, List<Integer> commands, List<Integer> recorded) {
+        int[] counts = new int[Command.values().length];
+        for (int packed : commands) {
+            Command command = Command.fromOpcode(packed >> 16);
+            if (command != null) {
+                counts[command.ordinal()]++;
+            }
+        }
+        int same = 0;
+        for (int i = 0; i < Math.min(commands.size(), recorded.size()); i++) {
+            if (commands.get(i).equals(recorded.get(i))) {
+                same++;
+            }
+        }
+        StringBuilder line = new StringBuilder(String.format(Locale.US,
+                "  %-24s %5d commands, %5d as recorded:", name, commands.size(), same));
+        for (Command command : Command.values()) {
+            if (counts[command.ordinal()] > 0) {
+                line.append(' ').append(command.getWord()).append(' ')
+                        .append(counts[command.ordinal()]);
+            }
+        }
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,59 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.PcmBlockListener;
+import com.google.android.gms.samples.vision.face.facetracker.core.ProportionalSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.SoundAcquisition;
+import com.google.android.gms.samples.vision.face.facetracker.core.SoundBearingEstimator;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.PcmGenerator;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.StandSimulator;
+
+import java.nio.ShortBuffer;
+import java.util.Locale;
+
+/**
+ * Starts the stand pointing away from a person who is out of view but can be heard, and measures
+ * how long it takes to get their face into the center of the picture using {@link SoundAcquisition}
+ * to turn towards them, with face steering taking over once the face is seen. The audio is
+ * synthetic stereo from {@link PcmGenerator}: noise plus a beat of short bursts, louder on the side
+ * the person is on.
+ */
+public class SoundAcquisitionSimulation {
+    private static final float[] OFFSETS = {-110f, -70f, -40f, 40f, 70f, 110f};
+    private static final long MAX_MS = 30000;
+    private static final int SAMPLE_RATE = 16000;
+
+    public static void main(String[] args) {
+        System.out.println("offset  time to center  sound moves");
+        for (float offset : OFFSETS) {
+            run(offset);
+        }
+    }
+
+    private static void run(float offset) {
+        float pan = StandSimulator.PAN_RANGE / 2;
+        float tilt = StandSimulator.TILT_RANGE / 2;
+        final StandSimulator simulator = new StandSimulator();
+        simulator.setSubject(pan + offset, tilt);
+        FaceSteering steering = new FaceSteering(new ProportionalSteeringPolicy(), simulator);
+
+        final SoundAcquisition acquisition =
+                new SoundAcquisition(new SoundBearingEstimator(), simulator);
+        PcmGenerator generator = new PcmGenerator(SAMPLE_RATE, 2, 42);
+        generator.setNoise(0.005f);
+        generator.setBeat(140, 0.3f);
+        simulator.setAudio(generator, new PcmBlockListener() {
+            @Override
+            public void onBlock(ShortBuffer samples, int channelCount, int sampleRate,
+                                long timestampMs) {
+                // Stands in for the face trackers reporting whether they see anyone
+                acquisition.setFaceTracked(simulator.isFaceVisible());
+                acquisition.onBlock(samples, channelCount, sampleRate, timestampMs);
+            }
+        });
+
+        long centeredMs = simulator.runUntilCentered(steering, MAX_MS);
+        System.out.println(String.format(Locale.US, "%6.0f  %14s  %11d", offset,
+                centeredMs < 0 ? "-" : centeredMs + "ms", acquisition.getPulseCount()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandTransport;
+import com.google.android.gms.samples.vision.face.facetracker.core.TcpTransport;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.LoopbackStand;
+
+import java.io.IOException;
+
+/**
+ * The stand end the link tools talk to, picked from their command line arguments: a
+ * {@link LoopbackStand} on a local TCP port by default, the same stand-in over an in-memory
+ * transport with {@code memory}, or a real server listening on TCP with a host and port.
+ */
+class StandLink {
+    private final LoopbackStand mStand;
+    private final CommandTransport mTransport;
+
+    private StandLink(LoopbackStand stand, CommandTransport transport) {
+        mStand = stand;
+        mTransport = transport;
+    }
+
+    static StandLink create(String[] args, int usbDelayMs, long clockOffsetUs) throws IOException {
+        if (args.length >= 2) {
+            return new StandLink(null, new TcpTransport(args[0], Integer.parseInt(args[1])));
+        }
+        LoopbackStand stand = new LoopbackStand(usbDelayMs, clockOffsetUs);
+        if (args.length == 1 && args[0].equals("memory")) {
+            return new StandLink(stand, stand.startInMemory());
+        }
+        return new StandLink(stand, new TcpTransport("127.0.0.1", stand.start()));
+    }
+
+    /**
+     * @return The local stand-in, or null when talking to a real server
+     */
+    LoopbackStand getStand() {
+        return mStand;
+    }
+
+    CommandTransport getTransport() {
+        return mTransport;
+    }
+
+    void stop() {
+        if (mStand != null) {
+            mStand.stop();
+        }
+    }
+}
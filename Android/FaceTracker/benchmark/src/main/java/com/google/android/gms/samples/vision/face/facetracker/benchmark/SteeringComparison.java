@@ -0,0 +1,97 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.ProportionalSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.RingSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.SteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.StandSimulator;
+
+import java.util.Locale;
+
+/**
+ * Re-centers a face that starts in the outer ring, in 16 directions around the center, with each
+ * steering policy on the {@link StandSimulator}, and prints the average time to center, the
+ * number of commands each re-centering took and how far past the center the face went. The ring
+ * policy never re-centers a face that is off diagonally, so the means of the two policies cover
+ * different cases; the last line compares them only on the cases both re-centered.
+ */
+public class SteeringComparison {
+    private static final int DIRECTIONS = 16;
+    // Start the face this far out from the center, relative to the edge of the view
+    private static final float[] DISTANCES = {0.7f, 0.85f};
+    private static final long TIMEOUT_MS = 20000;
+
+    private interface PolicyFactory {
+        SteeringPolicy create();
+    }
+
+    public static void main(String[] args) {
+        long[] ring = compare("ring", new PolicyFactory() {
+            @Override
+            public SteeringPolicy create() {
+                return new RingSteeringPolicy();
+            }
+        });
+        long[] proportional = compare("proportional", new PolicyFactory() {
+            @Override
+            public SteeringPolicy create() {
+                return new ProportionalSteeringPolicy();
+            }
+        });
+
+        long ringMs = 0;
+        long proportionalMs = 0;
+        int both = 0;
+        for (int i = 0; i < ring.length; i++) {
+            if (ring[i] >= 0 && proportional[i] >= 0) {
+                ringMs += ring[i];
+                proportionalMs += proportional[i];
+                both++;
+            }
+        }
+        System.out.println(String.format(Locale.US,
+                "both converged %2d/%d  mean time to center ring %5dms  proportional %5dms",
+                both, ring.length, both == 0 ? 0 : ringMs / both,
+                both == 0 ? 0 : proportionalMs / both));
+    }
+
+    /**
+     * @return Time to center of each run, or -1 for runs that did not converge
+     */
+    private static long[] compare(String name, PolicyFactory factory) {
+        long[] times = new long[DISTANCES.length * DIRECTIONS];
+        long totalMs = 0;
+        long maxMs = 0;
+        int commands = 0;
+        float overshoot = 0;
+        int converged = 0;
+        int runs = 0;
+        for (float distance : DISTANCES) {
+            for (int i = 0; i < DIRECTIONS; i++) {
+                double angle = 2 * Math.PI * i / DIRECTIONS;
+                StandSimulator simulator = new StandSimulator();
+                simulator.setStand(StandSimulator.PAN_RANGE / 2, StandSimulator.TILT_RANGE / 2);
+                simulator.setSubject(
+                        (float) (simulator.getPan() + Math.cos(angle) * distance * StandSimulator.FOV_X / 2),
+                        (float) (simulator.getTilt() + Math.sin(angle) * distance * StandSimulator.FOV_Y / 2));
+                FaceSteering steering = new FaceSteering(factory.create(), simulator);
+
+                long timeMs = simulator.runUntilCentered(steering, TIMEOUT_MS);
+                times[runs] = timeMs;
+                runs++;
+                if (timeMs >= 0) {
+                    converged++;
+                    totalMs += timeMs;
+                    maxMs = Math.max(maxMs, timeMs);
+                    commands += simulator.getReport().getCommands();
+                    overshoot = Math.max(overshoot, simulator.getReport().getMaxOvershoot());
+                }
+            }
+        }
+        System.out.println(String.format(Locale.US,
+                "%-14s converged %2d/%d  mean time to center %5dms  max %5dms  mean commands %.1f  max overshoot %.3f",
+                name, converged, runs, converged == 0 ? 0 : totalMs / converged, maxMs,
+                converged == 0 ? 0f : (float) commands / converged, overshoot));
+        return times;
+    }
+}
@@ -0,0 +1,184 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandSink;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceMotionFilter;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegionClassifier;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.RingSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.TargetSelector;
+import com.google.android.gms.samples.vision.face.facetracker.core.TripleBuffer;
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one camera frame through the steering code, for 1, 4 and 16 faces in view. Each
+ * benchmark invocation processes every face of one frame, the same work the target processor and
+ * the face trackers do minus the Android framework calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrackingBenchmark {
+    private static final int FRAMES = 1024;
+
+    @Param({"1", "4", "16"})
+    public int faces;
+
+    private FaceTrajectories mTrajectories;
+    private final FaceObservation mObservation = new FaceObservation();
+    private final FaceObservation mPredicted = new FaceObservation();
+    private final FaceRegionClassifier mClassifier = new FaceRegionClassifier();
+    private final FaceMotionFilter mFilter = new FaceMotionFilter();
+    private final TargetSelector mSelector = new TargetSelector(TargetSelector.Strategy.LARGEST);
+    private FaceObservation[] mFaces;
+    private FaceSteering mSteering;
+    private int mCommands;
+    private int mFrame;
+    // Stands in for GraphicOverlay's published transform
+    private volatile ViewTransform mView = FaceTrajectories.VIEW;
+
+    // Stands in for FaceGraphic.updateFace, which hands the face over to the UI thread
+    private final TripleBuffer<FaceObservation> mHandOff = new TripleBuffer<>(
+            new FaceObservation(), new FaceObservation(), new FaceObservation());
+    private volatile FaceRegion mHandOffRegion;
+
+    @Setup
+    public void setup() {
+        mTrajectories = new FaceTrajectories(faces, FRAMES);
+        mFaces = new FaceObservation[faces];
+        for (int i = 0; i < faces; i++) {
+            mFaces[i] = new FaceObservation();
+        }
+        mSteering = new FaceSteering(new RingSteeringPolicy(), new CommandSink() {
+            @Override
+            public void send(Command command, int durationMs) {
+                mCommands++;
+            }
+        });
+    }
+
+    private int nextFrame() {
+        mFrame = (mFrame + 1) % FRAMES;
+        return mFrame;
+    }
+
+    /**
+     * Only the mapping from preview to overlay coordinates, with the transform the overlay
+     * published, the way the trackers and drawing do it.
+     */
+    @Benchmark
+    public void mapCoordinates(Blackhole bh) {
+        int frame = nextFrame();
+        ViewTransform view = mView;
+        for (int face = 0; face < faces; face++) {
+            mTrajectories.get(frame, face, mObservation);
+            bh.consume(view.getFaceX(mObservation));
+            bh.consume(view.getFaceY(mObservation));
+        }
+    }
+
+    /**
+     * The same mapping with the scale worked out from the overlay and preview sizes for each face,
+     * as it was before the transform was built once per size.
+     */
+    @Benchmark
+    public void mapCoordinatesPerFace(Blackhole bh) {
+        int frame = nextFrame();
+        for (int face = 0; face < faces; face++) {
+            float scaleX = (float) FaceTrajectories.VIEW_WIDTH / (float) FaceTrajectories.PREVIEW_WIDTH;
+            float scaleY = (float) FaceTrajectories.VIEW_HEIGHT / (float) FaceTrajectories.PREVIEW_HEIGHT;
+            mTrajectories.get(frame, face, mObservation);
+            bh.consume(FaceTrajectories.VIEW_WIDTH - scaleX * mObservation.getCenterX());
+            bh.consume(scaleY * mObservation.getCenterY());
+        }
+    }
+
+    /**
+     * Mapping plus region classification.
+     */
+    @Benchmark
+    public void classify(Blackhole bh) {
+        int frame = nextFrame();
+        ViewTransform view = mView;
+        for (int face = 0; face < faces; face++) {
+            mTrajectories.get(frame, face, mObservation);
+            int x = (int) view.getFaceX(mObservation);
+            int y = (int) view.getFaceY(mObservation);
+            bh.consume(mClassifier.classify(FaceTrajectories.VIEW_WIDTH, FaceTrajectories.VIEW_HEIGHT, x, y));
+        }
+    }
+
+    /**
+     * Only the motion filter, smoothing and predicting the position of each face.
+     */
+    @Benchmark
+    public void predict(Blackhole bh) {
+        int frame = nextFrame();
+        for (int face = 0; face < faces; face++) {
+            mTrajectories.get(frame, face, mObservation);
+            mFilter.update(mObservation, mPredicted);
+            bh.consume(mPredicted.getX());
+            bh.consume(mPredicted.getY());
+        }
+    }
+
+    /**
+     * Only picking the target face.
+     */
+    @Benchmark
+    public int selectTarget() {
+        int frame = nextFrame();
+        for (int face = 0; face < faces; face++) {
+            mTrajectories.get(frame, face, mFaces[face]);
+        }
+        return mSelector.select(mFaces, faces, FaceTrajectories.PREVIEW_WIDTH,
+                FaceTrajectories.PREVIEW_HEIGHT);
+    }
+
+    /**
+     * The whole per-frame path: picking the target, steering towards it, classifying the other
+     * faces and handing the results over for drawing.
+     */
+    @Benchmark
+    public int onUpdate() {
+        int frame = nextFrame();
+        for (int face = 0; face < faces; face++) {
+            mTrajectories.get(frame, face, mFaces[face]);
+        }
+        int target = mSelector.select(mFaces, faces, FaceTrajectories.PREVIEW_WIDTH,
+                FaceTrajectories.PREVIEW_HEIGHT);
+        ViewTransform view = mView;
+        for (int face = 0; face < faces; face++) {
+            FaceObservation observation = mFaces[face];
+            FaceRegion region = face == target
+                    ? mSteering.update(observation, view)
+                    : mSteering.classify(observation, view);
+            FaceObservation handOff = mHandOff.getBack();
+            handOff.set(observation.getId(), observation.getTimestampMs(), observation.getX(),
+                    observation.getY(), observation.getWidth(), observation.getHeight());
+            mHandOff.publish();
+            mHandOffRegion = region;
+        }
+        return mCommands;
+    }
+}
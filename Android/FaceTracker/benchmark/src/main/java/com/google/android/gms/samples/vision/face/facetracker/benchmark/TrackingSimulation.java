@@ -0,0 +1,84 @@
+package com.google.android.gms.samples.vision.face.facetracker.benchmark;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceMotionFilter;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.ProportionalSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.RingSteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.SteeringPolicy;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.SimulationReport;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.StandSimulator;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.SubjectPath;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.SwayingSubject;
+import com.google.android.gms.samples.vision.face.facetracker.core.sim.WalkingSubject;
+
+import java.util.Locale;
+
+/**
+ * Follows a moving person with each steering policy on the {@link StandSimulator} for a few
+ * simulated minutes, with and without a {@link FaceMotionFilter} predicting the face position, and
+ * prints the report for each along with how much faster than real time the simulation ran. The
+ * detections jitter by a few pixels, as real ones do.
+ */
+public class TrackingSimulation {
+    private static final long DURATION_MS = 10 * 60 * 1000;
+    private static final float PAN = StandSimulator.PAN_RANGE / 2;
+    private static final float TILT = StandSimulator.TILT_RANGE / 2;
+    private static final float DETECTION_NOISE_PX = 3f;
+
+    private interface Scenario {
+        SubjectPath create();
+    }
+
+    public static void main(String[] args) {
+        Scenario[] scenarios = {
+                new Scenario() {
+                    @Override
+                    public SubjectPath create() {
+                        return new SwayingSubject(PAN, TILT, 15f, 3f, 4000f);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "swaying";
+                    }
+                },
+                new Scenario() {
+                    @Override
+                    public SubjectPath create() {
+                        return new WalkingSubject(42, PAN, TILT, 60f, 10f, 20f, 3000);
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "walking";
+                    }
+                },
+        };
+
+        for (Scenario scenario : scenarios) {
+            System.out.println(scenario + ":");
+            run("ring", new RingSteeringPolicy(), false, scenario.create());
+            run("ring+predict", new RingSteeringPolicy(), true, scenario.create());
+            run("proportional", new ProportionalSteeringPolicy(), false, scenario.create());
+            run("proportional+predict", new ProportionalSteeringPolicy(), true, scenario.create());
+        }
+    }
+
+    private static void run(String name, SteeringPolicy policy, boolean predict,
+                            SubjectPath subject) {
+        StandSimulator simulator = new StandSimulator();
+        simulator.setSubject(subject);
+        simulator.setDetectionNoise(DETECTION_NOISE_PX, 7);
+        FaceSteering steering = new FaceSteering(policy, simulator);
+        if (predict) {
+            steering.setMotionFilter(new FaceMotionFilter());
+        }
+
+        long startNs = System.nanoTime();
+        SimulationReport report = simulator.run(steering, DURATION_MS);
+        long elapsedMs = Math.max(1, (System.nanoTime() - startNs) / 1000000);
+
+        System.out.println(String.format(Locale.US, "  %-22s %s (%dx real time)",
+                name, report, DURATION_MS / elapsedMs));
+    }
+}
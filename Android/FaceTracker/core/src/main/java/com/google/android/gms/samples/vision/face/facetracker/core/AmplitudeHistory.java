@@ -0,0 +1,45 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * The last few audio amplitudes, oldest first, for drawing a scrolling chart. Backed by a fixed
+ * size ring buffer, so adding a value is constant time and never allocates, however long the
+ * history is. Until it has filled up, the history is padded with zeros at the old end.<p>
+ *
+ * Not thread safe.
+ */
+public class AmplitudeHistory {
+    private final float[] mValues;
+    // Index of the oldest value
+    private int mHead;
+
+    public AmplitudeHistory(int capacity) {
+        mValues = new float[capacity];
+    }
+
+    /**
+     * Adds the newest value, dropping the oldest one.
+     */
+    public void add(float value) {
+        mValues[mHead] = value;
+        mHead = (mHead + 1) % mValues.length;
+    }
+
+    /**
+     * @param index 0 for the oldest value up to {@link #size()} - 1 for the newest
+     */
+    public float get(int index) {
+        int i = mHead + index;
+        return mValues[i < mValues.length ? i : i - mValues.length];
+    }
+
+    public int size() {
+        return mValues.length;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i] = 0;
+        }
+        mHead = 0;
+    }
+}
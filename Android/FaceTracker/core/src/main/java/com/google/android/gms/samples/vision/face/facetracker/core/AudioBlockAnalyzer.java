@@ -0,0 +1,94 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Works out the {@link AudioLevels} of each captured block on the capture thread, and makes the
+ * latest ones available to any other thread without locking. Readers never wait for the capture
+ * thread: {@link #getLevels(AudioLevels)} retries in the rare case that a block was published
+ * while it was copying, and the capture thread never waits for readers.
+ */
+public class AudioBlockAnalyzer implements PcmBlockListener {
+    private static final float FULL_SCALE = 32768f;
+
+    // Odd while the levels below are being written
+    private volatile int mSequence;
+    private volatile long mTimestampMs;
+    private volatile float mRms;
+    private volatile float mPeak;
+    private volatile float mOnset;
+
+    // Largest sample since the last call to getPeakAmplitude(), in raw sample units
+    private final AtomicInteger mPeakSinceRead = new AtomicInteger();
+
+    // Only touched on the capture thread
+    private float mLastEnergy;
+
+    @Override
+    public void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs) {
+        int count = samples.remaining();
+        if (count == 0) {
+            return;
+        }
+        int start = samples.position();
+        long sumSquares = 0;
+        int peak = 0;
+        for (int i = 0; i < count; i++) {
+            int sample = samples.get(start + i);
+            sumSquares += sample * sample;
+            int magnitude = sample < 0 ? -sample : sample;
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+        }
+
+        float energy = (float) sumSquares / count / (FULL_SCALE * FULL_SCALE);
+        float onset = Math.max(0f, energy - mLastEnergy);
+        mLastEnergy = energy;
+
+        mSequence++;
+        mTimestampMs = timestampMs;
+        mRms = (float) Math.sqrt(energy);
+        mPeak = peak / FULL_SCALE;
+        mOnset = onset;
+        mSequence++;
+
+        while (true) {
+            int previous = mPeakSinceRead.get();
+            if (previous >= peak || mPeakSinceRead.compareAndSet(previous, peak)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Copies the levels of the latest block. Can be called from any thread.
+     *
+     * @return False if no block has been analyzed yet
+     */
+    public boolean getLevels(AudioLevels out) {
+        while (true) {
+            int sequence = mSequence;
+            if ((sequence & 1) != 0) {
+                continue;
+            }
+            long timestampMs = mTimestampMs;
+            float rms = mRms;
+            float peak = mPeak;
+            float onset = mOnset;
+            if (sequence == mSequence) {
+                out.set(timestampMs, rms, peak, onset);
+                return sequence != 0;
+            }
+        }
+    }
+
+    /**
+     * @return The largest absolute sample since the last call, from 0 to 32767, like
+     * MediaRecorder.getMaxAmplitude(). Can be called from any thread.
+     */
+    public int getPeakAmplitude() {
+        return Math.min(mPeakSinceRead.getAndSet(0), 32767);
+    }
+}
@@ -0,0 +1,41 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * The loudness of one block of audio. Levels are fractions of full scale, from 0 to 1. Instances
+ * are meant to be reused, so they are filled in with {@link #set(long, float, float, float)}.
+ */
+public class AudioLevels {
+    private long mTimestampMs;
+    private float mRms;
+    private float mPeak;
+    private float mOnset;
+
+    /**
+     * @param timestampMs Time the block ended
+     * @param rms Root mean square of the samples
+     * @param peak Largest absolute sample
+     * @param onset How much the energy of the block rose over the block before, or 0 if it fell
+     */
+    public void set(long timestampMs, float rms, float peak, float onset) {
+        mTimestampMs = timestampMs;
+        mRms = rms;
+        mPeak = peak;
+        mOnset = onset;
+    }
+
+    public long getTimestampMs() {
+        return mTimestampMs;
+    }
+
+    public float getRms() {
+        return mRms;
+    }
+
+    public float getPeak() {
+        return mPeak;
+    }
+
+    public float getOnset() {
+        return mOnset;
+    }
+}
@@ -0,0 +1,205 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Finds the beat in captured audio as it streams in: its tempo, and when the next beat is due.<p>
+ *
+ * The audio is cut into 10ms hops. The onset strength of each hop is how much its log energy rose
+ * over the hop before, and the last few seconds of onset strengths are kept in a ring buffer.
+ * A few times a second the tempo is found by autocorrelating that window over the lags for
+ * {@link #MIN_BPM} to {@link #MAX_BPM}, and the phase by lining up a comb of beats at that tempo
+ * with the onsets. All buffers are allocated up front, so memory use is constant and blocks are
+ * processed without allocating.<p>
+ *
+ * Fed and queried on the capture thread, except {@link #getBpm()} which can be read from anywhere.
+ */
+public class BeatTracker implements PcmBlockListener {
+    public static final int HOP_MS = 10;
+    public static final int WINDOW_MS = 4000;
+    public static final float MIN_BPM = 60f;
+    public static final float MAX_BPM = 180f;
+    // How often the tempo and phase are estimated again
+    private static final int ESTIMATE_INTERVAL_MS = 250;
+    private static final float SILENCE = 1e-10f;
+    // How well half the best lag has to correlate, relative to the best lag, to be taken instead
+    private static final float OCTAVE_RATIO = 0.8f;
+
+    private final int mSampleRate;
+    private final int mHopFrames;
+    private final int mWindowHops;
+    private final int mMinLag;
+    private final int mMaxLag;
+
+    // Onset strength of the last mWindowHops hops, mOnsetHead is where the next one goes
+    private final float[] mOnsets;
+    private int mOnsetHead;
+    private long mHops;
+    // Scratch for the estimates: the window oldest first, and the autocorrelation by lag
+    private final float[] mWindow;
+    private final float[] mCorrelation;
+
+    private double mHopEnergy;
+    private int mHopFill;
+    private float mLastLogEnergy = Float.NaN;
+    private long mLastHopMs;
+
+    private volatile float mBpm;
+    private float mConfidence;
+    private float mPeriodMs;
+    private long mLastBeatMs;
+
+    public BeatTracker(int sampleRate) {
+        mSampleRate = sampleRate;
+        mHopFrames = sampleRate * HOP_MS / 1000;
+        mWindowHops = WINDOW_MS / HOP_MS;
+        mMinLag = Math.round(60000f / MAX_BPM / HOP_MS);
+        mMaxLag = Math.round(60000f / MIN_BPM / HOP_MS);
+        mOnsets = new float[mWindowHops];
+        mWindow = new float[mWindowHops];
+        mCorrelation = new float[mMaxLag + 2];
+    }
+
+    @Override
+    public void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs) {
+        int start = samples.position();
+        int frames = samples.remaining() / channelCount;
+        for (int frame = 0; frame < frames; frame++) {
+            int index = start + frame * channelCount;
+            for (int channel = 0; channel < channelCount; channel++) {
+                int sample = samples.get(index + channel);
+                mHopEnergy += sample * sample;
+            }
+            if (++mHopFill == mHopFrames) {
+                // An onset anywhere in the hop is taken to be in the middle of it
+                long hopMs = timestampMs - (frames - 1 - frame) * 1000L / mSampleRate - HOP_MS / 2;
+                endHop(channelCount, hopMs);
+            }
+        }
+    }
+
+    private void endHop(int channelCount, long hopMs) {
+        float energy = (float) (mHopEnergy / (mHopFrames * channelCount) / (32768.0 * 32768.0));
+        float logEnergy = (float) Math.log10(energy + SILENCE);
+        float onset = Float.isNaN(mLastLogEnergy) ? 0f : Math.max(0f, logEnergy - mLastLogEnergy);
+        mLastLogEnergy = logEnergy;
+        mHopEnergy = 0;
+        mHopFill = 0;
+
+        mOnsets[mOnsetHead] = onset;
+        mOnsetHead = (mOnsetHead + 1) % mWindowHops;
+        mHops++;
+        mLastHopMs = hopMs;
+
+        if (mHops >= mWindowHops && mHops % (ESTIMATE_INTERVAL_MS / HOP_MS) == 0) {
+            estimate();
+        }
+    }
+
+    private void estimate() {
+        int n = mWindowHops;
+        float mean = 0;
+        for (int i = 0; i < n; i++) {
+            float onset = mOnsets[(mOnsetHead + i) % n];
+            mWindow[i] = onset;
+            mean += onset;
+        }
+        mean /= n;
+        float variance = 0;
+        for (int i = 0; i < n; i++) {
+            mWindow[i] -= mean;
+            variance += mWindow[i] * mWindow[i];
+        }
+        variance /= n;
+        if (variance <= 0) {
+            mBpm = 0;
+            mConfidence = 0;
+            return;
+        }
+
+        // Tempo: the lag at which the onsets look most like themselves
+        int bestLag = mMinLag;
+        for (int lag = mMinLag - 1; lag <= mMaxLag + 1; lag++) {
+            float sum = 0;
+            for (int i = lag; i < n; i++) {
+                sum += mWindow[i] * mWindow[i - lag];
+            }
+            mCorrelation[lag] = sum / (n - lag);
+            if (lag >= mMinLag && lag <= mMaxLag && mCorrelation[lag] > mCorrelation[bestLag]) {
+                bestLag = lag;
+            }
+        }
+        // Every multiple of the beat period correlates about as well as the period itself, so go
+        // for the shortest period that is nearly as good
+        int halfLag = bestLag / 2;
+        while (halfLag - 1 >= mMinLag) {
+            int candidate = halfLag;
+            for (int lag = halfLag - 1; lag <= halfLag + 1; lag++) {
+                if (mCorrelation[lag] > mCorrelation[candidate]) {
+                    candidate = lag;
+                }
+            }
+            if (mCorrelation[candidate] < OCTAVE_RATIO * mCorrelation[bestLag]) {
+                break;
+            }
+            bestLag = candidate;
+            halfLag = bestLag / 2;
+        }
+
+        float before = mCorrelation[bestLag - 1];
+        float peak = mCorrelation[bestLag];
+        float after = mCorrelation[bestLag + 1];
+        float curvature = before - 2 * peak + after;
+        float offset = curvature < 0 ? 0.5f * (before - after) / curvature : 0f;
+        float periodHops = bestLag + offset;
+
+        // Phase: where a comb of beats at that tempo lines up best with the onsets, counted back
+        // from the newest hop
+        int bestShift = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int shift = 0; shift < bestLag; shift++) {
+            float score = 0;
+            for (float position = n - 1 - shift; position >= 0; position -= periodHops) {
+                score += mWindow[(int) position];
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestShift = shift;
+            }
+        }
+
+        mPeriodMs = periodHops * HOP_MS;
+        mLastBeatMs = mLastHopMs - bestShift * HOP_MS;
+        mConfidence = Math.min(1f, peak / variance);
+        mBpm = 60000f / mPeriodMs;
+    }
+
+    /**
+     * @return The current tempo in beats per minute, or 0 before there is enough audio to tell
+     */
+    public float getBpm() {
+        return mBpm;
+    }
+
+    /**
+     * @return How strongly the onsets repeat at the current tempo, from 0 (not at all) to 1
+     */
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    public float getPeriodMs() {
+        return mPeriodMs;
+    }
+
+    /**
+     * @return The first beat predicted at or after the given time, or -1 if there is no tempo yet
+     */
+    public long getNextBeatMs(long timeMs) {
+        if (mBpm <= 0) {
+            return -1;
+        }
+        double beats = Math.ceil((timeMs - mLastBeatMs) / (double) mPeriodMs);
+        return mLastBeatMs + Math.round(beats * mPeriodMs);
+    }
+}
@@ -0,0 +1,23 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Source of the current time for code that has to measure intervals, so the simulator can run it
+ * on simulated time.
+ */
+public interface Clock {
+
+    /**
+     * Monotonic time, unaffected by changes to the wall clock.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long getTimeMs() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    /**
+     * @return The current time in milliseconds, from an arbitrary starting point
+     */
+    long getTimeMs();
+}
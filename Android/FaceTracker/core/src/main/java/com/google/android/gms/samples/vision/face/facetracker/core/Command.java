@@ -0,0 +1,56 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Commands understood by the phone stand server.
+ */
+public enum Command {
+    UP("up", 0x01),
+    DOWN("down", 0x02),
+    LEFT("left", 0x03),
+    RIGHT("right", 0x04),
+    STOP("stop", 0x05),
+    ZERO("zero", 0x06),
+    LED_ON("led-on", 0x07),
+    LED_OFF("led-off", 0x08);
+
+    // Indexed by opcode
+    private static final Command[] BY_OPCODE = new Command[0x09];
+
+    static {
+        for (Command command : values()) {
+            BY_OPCODE[command.mOpcode] = command;
+        }
+    }
+
+    private final String mWord;
+    private final int mOpcode;
+
+    Command(String word, int opcode) {
+        mWord = word;
+        mOpcode = opcode;
+    }
+
+    /**
+     * @return The command with the given {@link CommandCodec} opcode, or null if there is none
+     */
+    public static Command fromOpcode(int opcode) {
+        if (opcode < 0 || opcode >= BY_OPCODE.length) {
+            return null;
+        }
+        return BY_OPCODE[opcode];
+    }
+
+    /**
+     * @return The word the stand server expects for this command
+     */
+    public String getWord() {
+        return mWord;
+    }
+
+    /**
+     * @return The opcode of this command in the binary {@link CommandCodec} frames
+     */
+    public int getOpcode() {
+        return mOpcode;
+    }
+}
@@ -0,0 +1,50 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * The server's acknowledgement of a timestamped command, sent once the command's first USB
+ * transfer is done. Instances are meant to be reused, so they are filled in with
+ * {@link #set(int, int, long, long, long)}.
+ */
+public class CommandAck {
+    private int mOpcode;
+    private int mSequence;
+    private long mSentUs;
+    private long mServerReceivedUs;
+    private long mServerDoneUs;
+
+    /**
+     * @param opcode Opcode of the command
+     * @param sequence Sequence number of the command, 16 bits
+     * @param sentUs Timestamp the command was sent with, on the app's clock
+     * @param serverReceivedUs When the server received the command, on the server's clock
+     * @param serverDoneUs When the USB transfer was done, on the server's clock
+     */
+    public void set(int opcode, int sequence, long sentUs, long serverReceivedUs,
+                    long serverDoneUs) {
+        mOpcode = opcode;
+        mSequence = sequence;
+        mSentUs = sentUs;
+        mServerReceivedUs = serverReceivedUs;
+        mServerDoneUs = serverDoneUs;
+    }
+
+    public int getOpcode() {
+        return mOpcode;
+    }
+
+    public int getSequence() {
+        return mSequence;
+    }
+
+    public long getSentUs() {
+        return mSentUs;
+    }
+
+    public long getServerReceivedUs() {
+        return mServerReceivedUs;
+    }
+
+    public long getServerDoneUs() {
+        return mServerDoneUs;
+    }
+}
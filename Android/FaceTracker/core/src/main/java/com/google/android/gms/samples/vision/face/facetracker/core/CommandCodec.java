@@ -0,0 +1,174 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Binary framing of commands sent to the stand. Every command is a fixed size frame, so commands
+ * written back to back can always be split apart again by the server:
+ * <pre>
+ * byte 0     0xA5 sync byte
+ * byte 1     opcode, see {@link Command#getOpcode()}
+ * bytes 2-3  duration in ms, big endian. 0 keeps moving until the next command
+ * bytes 4-5  sequence number, big endian, wrapping at 65536
+ * byte 6     reserved, 0
+ * byte 7     checksum: sum of bytes 0 to 6, modulo 256
+ * </pre>
+ * Timestamped commands use a longer frame with its own sync byte, and the server acknowledges
+ * each of them once its USB transfer is done:
+ * <pre>
+ * byte 0       0xA6 sync byte
+ * bytes 1-6    as above
+ * bytes 7-14   time the command was sent in us on the app's monotonic clock, big endian
+ * byte 15      checksum: sum of bytes 0 to 14, modulo 256
+ * </pre>
+ * The acknowledgement echoes the timestamp, and adds the server's own times for working out the
+ * offset between the two clocks:
+ * <pre>
+ * byte 0       0xA7 sync byte
+ * byte 1       opcode of the command
+ * bytes 2-3    sequence number of the command
+ * bytes 4-6    reserved, 0
+ * bytes 7-14   time the command was sent, echoed
+ * bytes 15-22  time the server received the command in us on its clock
+ * bytes 23-30  time the USB transfer was done in us on the server's clock
+ * byte 31      checksum: sum of bytes 0 to 30, modulo 256
+ * </pre>
+ * A timestamped frame with opcode {@link #PING_OPCODE} is a keep-alive. The server does nothing
+ * with it but acknowledge it straight away, so the app can tell a live connection from a half-open
+ * one while it has no commands to send.<p>
+ *
+ * The decoder is {@code FrameDecoder} in PhoneServer.py.
+ */
+public class CommandCodec {
+    public static final int FRAME_SIZE = 8;
+    public static final int SYNC = 0xA5;
+    public static final int TIMED_FRAME_SIZE = 16;
+    public static final int TIMED_SYNC = 0xA6;
+    public static final int ACK_SIZE = 32;
+    public static final int ACK_SYNC = 0xA7;
+    public static final int PING_OPCODE = 0x09;
+    public static final int MAX_DURATION_MS = 0xFFFF;
+
+    /**
+     * Writes one frame into the buffer.
+     *
+     * @param durationMs How long to move for, 0 to move until the next command. Clamped to
+     *                   {@link #MAX_DURATION_MS}
+     * @param sequence Sequence number, only the low 16 bits are sent
+     * @return The number of bytes written, always {@link #FRAME_SIZE}
+     */
+    public static int encode(Command command, int durationMs, int sequence, byte[] out, int offset) {
+        writeHeader(SYNC, command.getOpcode(), durationMs, sequence, out, offset);
+        out[offset + 7] = (byte) checksum(out, offset, FRAME_SIZE);
+        return FRAME_SIZE;
+    }
+
+    /**
+     * Writes one timestamped frame into the buffer.
+     *
+     * @param timestampUs Time the command was sent, echoed back in the acknowledgement
+     * @return The number of bytes written, always {@link #TIMED_FRAME_SIZE}
+     * @see #encode(Command, int, int, byte[], int)
+     */
+    public static int encodeTimed(Command command, int durationMs, int sequence, long timestampUs,
+                                  byte[] out, int offset) {
+        writeHeader(TIMED_SYNC, command.getOpcode(), durationMs, sequence, out, offset);
+        writeLong(timestampUs, out, offset + 7);
+        out[offset + 15] = (byte) checksum(out, offset, TIMED_FRAME_SIZE);
+        return TIMED_FRAME_SIZE;
+    }
+
+    /**
+     * Writes one keep-alive frame into the buffer.
+     *
+     * @return The number of bytes written, always {@link #TIMED_FRAME_SIZE}
+     */
+    public static int encodePing(int sequence, long timestampUs, byte[] out, int offset) {
+        writeHeader(TIMED_SYNC, PING_OPCODE, 0, sequence, out, offset);
+        writeLong(timestampUs, out, offset + 7);
+        out[offset + 15] = (byte) checksum(out, offset, TIMED_FRAME_SIZE);
+        return TIMED_FRAME_SIZE;
+    }
+
+    /**
+     * Writes one acknowledgement into the buffer, as the server does.
+     *
+     * @return The number of bytes written, always {@link #ACK_SIZE}
+     */
+    public static int encodeAck(CommandAck ack, byte[] out, int offset) {
+        out[offset] = (byte) ACK_SYNC;
+        out[offset + 1] = (byte) ack.getOpcode();
+        out[offset + 2] = (byte) (ack.getSequence() >> 8);
+        out[offset + 3] = (byte) ack.getSequence();
+        out[offset + 4] = 0;
+        out[offset + 5] = 0;
+        out[offset + 6] = 0;
+        writeLong(ack.getSentUs(), out, offset + 7);
+        writeLong(ack.getServerReceivedUs(), out, offset + 15);
+        writeLong(ack.getServerDoneUs(), out, offset + 23);
+        out[offset + 31] = (byte) checksum(out, offset, ACK_SIZE);
+        return ACK_SIZE;
+    }
+
+    /**
+     * Reads one acknowledgement from the buffer.
+     *
+     * @return False if the sync byte or the checksum is wrong, in which case out is left alone
+     */
+    public static boolean decodeAck(byte[] in, int offset, CommandAck out) {
+        if ((in[offset] & 0xFF) != ACK_SYNC
+                || (in[offset + 31] & 0xFF) != checksum(in, offset, ACK_SIZE)) {
+            return false;
+        }
+        out.set(in[offset + 1] & 0xFF,
+                ((in[offset + 2] & 0xFF) << 8) | (in[offset + 3] & 0xFF),
+                readLong(in, offset + 7),
+                readLong(in, offset + 15),
+                readLong(in, offset + 23));
+        return true;
+    }
+
+    /**
+     * @return The checksum of the frame starting at offset, ignoring its checksum byte
+     */
+    public static int checksum(byte[] frame, int offset) {
+        return checksum(frame, offset, FRAME_SIZE);
+    }
+
+    /**
+     * @param size Size of the frame, including the checksum byte at its end
+     * @return The checksum of the frame starting at offset, ignoring its checksum byte
+     */
+    public static int checksum(byte[] frame, int offset, int size) {
+        int sum = 0;
+        for (int i = 0; i < size - 1; i++) {
+            sum += frame[offset + i] & 0xFF;
+        }
+        return sum & 0xFF;
+    }
+
+    private static void writeHeader(int sync, int opcode, int durationMs, int sequence,
+                                    byte[] out, int offset) {
+        int duration = Math.max(0, Math.min(durationMs, MAX_DURATION_MS));
+        out[offset] = (byte) sync;
+        out[offset + 1] = (byte) opcode;
+        out[offset + 2] = (byte) (duration >> 8);
+        out[offset + 3] = (byte) duration;
+        out[offset + 4] = (byte) (sequence >> 8);
+        out[offset + 5] = (byte) sequence;
+        out[offset + 6] = 0;
+    }
+
+    private static void writeLong(long value, byte[] out, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>= 8;
+        }
+    }
+
+    private static long readLong(byte[] in, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (in[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
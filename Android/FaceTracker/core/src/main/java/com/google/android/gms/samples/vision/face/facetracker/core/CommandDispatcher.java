@@ -0,0 +1,450 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.IOException;
+
+/**
+ * Sends commands to the stand from a background thread, so that the detector thread never blocks
+ * on the connection.<p>
+ *
+ * {@link #send(Command, int)} only puts the command in a small bounded queue. Commands that have not
+ * been written yet are coalesced: a new movement command (up, down, left, right or stop) replaces
+ * any movement command still waiting in the queue, and likewise for the LED commands, since only
+ * the latest one matters to the stand. {@link Command#ZERO} is never dropped and nothing is moved
+ * across it. The command being written is left alone, so a newer one always gets written after
+ * it.<p>
+ *
+ * The writer thread goes through the {@link State}s of the connection. It connects as soon as it
+ * starts, so the first command does not wait for the connection to open. If the connection fails,
+ * it closes it and reconnects with exponential backoff while commands keep coalescing in the
+ * queue. While there are no commands it sends keep-alives, and a write that the server has not
+ * acknowledged within the reply timeout fails the connection the same way, so a connection that
+ * went half-open is found before the next command is lost on it.<p>
+ *
+ * Each writer thread only runs while it is the current one, and only the current one touches the
+ * writer or calls the listener. {@link #stop()} closes the writer, which aborts a connect in
+ * progress, and waits for the thread to finish, so a quick stop and start never has two threads
+ * connecting the same writer.<p>
+ *
+ * With a {@link PipelineLatency} set, the time each command waited in the queue and the time it
+ * took to write are recorded on the writer thread.
+ */
+public class CommandDispatcher implements CommandSink {
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long MIN_BACKOFF_MS = 250;
+    public static final long MAX_BACKOFF_MS = 8000;
+    public static final long DEFAULT_KEEP_ALIVE_MS = 1000;
+    public static final long DEFAULT_REPLY_TIMEOUT_MS = 3000;
+
+    public enum State {
+        /** Not started, or stopped */
+        STOPPED,
+        /** Opening the connection */
+        CONNECTING,
+        /** Writing commands as they come, and keep-alives while there are none */
+        CONNECTED,
+        /** Waiting to reconnect after the connection failed */
+        BACKOFF
+    }
+
+    /**
+     * Reports connection changes. Called on the writer thread.
+     */
+    public interface Listener {
+        void onConnected();
+
+        void onConnectionFailed(int attempt, long retryInMs, IOException e);
+    }
+
+    private final Object mLock = new Object();
+    private final CommandWriter mWriter;
+    // Ring buffer of commands waiting to be written, guarded by mLock
+    private final Command[] mQueue;
+    private final int[] mDurations;
+    // System.nanoTime() when each command was queued
+    private final long[] mQueuedNs;
+    private int mHead;
+    private int mCount;
+    // Whether the head of the queue is being written, so it must not be coalesced or dropped
+    private boolean mWriting;
+    private Listener mListener;
+    private PipelineLatency mLatency;
+    private long mKeepAliveMs = DEFAULT_KEEP_ALIVE_MS;
+    private long mReplyTimeoutMs = DEFAULT_REPLY_TIMEOUT_MS;
+    // The writer thread that owns the connection, or null once stopped
+    private volatile Thread mThread;
+    private volatile State mState = State.STOPPED;
+    // When anything was last written, and the oldest write the server has not acknowledged yet,
+    // or 0 if there is none. Only touched by the writer thread.
+    private long mLastWriteNs;
+    private long mUnansweredNs;
+    private volatile int mDropped;
+
+    public CommandDispatcher(CommandWriter writer) {
+        this(writer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of commands that can be queued, raised to 2 so that one can wait while
+     *                 another is being written
+     */
+    public CommandDispatcher(CommandWriter writer, int capacity) {
+        capacity = Math.max(2, capacity);
+        mWriter = writer;
+        mQueue = new Command[capacity];
+        mDurations = new int[capacity];
+        mQueuedNs = new long[capacity];
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param latency Where to record queue wait and write times, or null. Set before starting.
+     */
+    public void setLatency(PipelineLatency latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * @param keepAliveMs How long the connection may be idle before a keep-alive is sent, or 0 to
+     *                    send none and not check for replies either
+     * @param replyTimeoutMs How long to wait for the server to acknowledge a write before giving
+     *                       up on the connection
+     */
+    public void setKeepAlive(long keepAliveMs, long replyTimeoutMs) {
+        mKeepAliveMs = keepAliveMs;
+        mReplyTimeoutMs = replyTimeoutMs;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * Starts the writer thread, which connects straight away. Does nothing if it is already
+     * running.
+     */
+    public synchronized void start() {
+        synchronized (mLock) {
+            if (mThread != null) {
+                return;
+            }
+            mState = State.CONNECTING;
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            }, "StandCommandWriter");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread, closes the connection and waits for the thread to finish. Commands
+     * still in the queue are dropped.
+     */
+    public synchronized void stop() {
+        Thread thread;
+        synchronized (mLock) {
+            thread = mThread;
+            mThread = null;
+            mState = State.STOPPED;
+            clearLocked();
+            mLock.notifyAll();
+        }
+        if (thread == null) {
+            return;
+        }
+        // Interrupt first, so a connect that has not opened its socket yet gives up before it
+        // blocks, see CommandTransport#close
+        thread.interrupt();
+        mWriter.close();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Whether the calling thread is the writer thread that owns the connection
+     */
+    private boolean isCurrent() {
+        return mThread == Thread.currentThread();
+    }
+
+    /**
+     * Queues a command for sending. Never blocks on the connection.
+     */
+    @Override
+    public void send(Command command, int durationMs) {
+        long nowNs = System.nanoTime();
+        synchronized (mLock) {
+            if (command != Command.ZERO) {
+                removePendingLocked(command);
+            }
+            if (mCount == mQueue.length) {
+                // Drop the oldest command, the newest one reflects the current state better
+                if (mWriting) {
+                    removeLocked(1);
+                } else {
+                    mHead = (mHead + 1) % mQueue.length;
+                    mCount--;
+                }
+                mDropped++;
+            }
+            int tail = (mHead + mCount) % mQueue.length;
+            mQueue[tail] = command;
+            mDurations[tail] = durationMs;
+            mQueuedNs[tail] = nowNs;
+            mCount++;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return Number of commands dropped because the queue was full
+     */
+    public int getDroppedCount() {
+        return mDropped;
+    }
+
+    /**
+     * @return Number of commands waiting to be written
+     */
+    public int getPendingCount() {
+        synchronized (mLock) {
+            return mCount;
+        }
+    }
+
+    private static boolean isLed(Command command) {
+        return command == Command.LED_ON || command == Command.LED_OFF;
+    }
+
+    /**
+     * Removes queued commands that the given command supersedes, up to the last {@link Command#ZERO}
+     * and not including the command being written.
+     */
+    private void removePendingLocked(Command command) {
+        boolean led = isLed(command);
+        int first = mWriting ? 1 : 0;
+        // Walk back from the tail, stopping at a zero since the commands before it still matter
+        for (int i = mCount - 1; i >= first; i--) {
+            Command pending = mQueue[(mHead + i) % mQueue.length];
+            if (pending == Command.ZERO) {
+                break;
+            }
+            if (isLed(pending) == led) {
+                removeLocked(i);
+            }
+        }
+    }
+
+    /**
+     * Removes the command at the given position from the head, shifting the newer commands down
+     * over it.
+     */
+    private void removeLocked(int index) {
+        for (int j = index; j < mCount - 1; j++) {
+            int to = (mHead + j) % mQueue.length;
+            int from = (mHead + j + 1) % mQueue.length;
+            mQueue[to] = mQueue[from];
+            mDurations[to] = mDurations[from];
+            mQueuedNs[to] = mQueuedNs[from];
+        }
+        mCount--;
+        mQueue[(mHead + mCount) % mQueue.length] = null;
+    }
+
+    private void clearLocked() {
+        for (int i = 0; i < mQueue.length; i++) {
+            mQueue[i] = null;
+        }
+        mHead = 0;
+        mCount = 0;
+        mWriting = false;
+    }
+
+    /**
+     * Waits for a command and returns the head of the queue, without removing it. The head is
+     * marked as being written until {@link #finishWrite(boolean)}.
+     *
+     * @param timeoutMs How long to wait at most, 0 to wait until there is a command
+     * @param duration Receives the duration of the command
+     * @param queuedNs Receives the time the command was queued
+     * @return The command, or null if there was none in time or once stopped
+     */
+    private Command peek(long timeoutMs, int[] duration, long[] queuedNs)
+            throws InterruptedException {
+        synchronized (mLock) {
+            if (isCurrent() && mCount == 0) {
+                mLock.wait(timeoutMs);
+            }
+            if (!isCurrent() || mCount == 0) {
+                return null;
+            }
+            duration[0] = mDurations[mHead];
+            queuedNs[0] = mQueuedNs[mHead];
+            mWriting = true;
+            return mQueue[mHead];
+        }
+    }
+
+    /**
+     * Ends the write of the head of the queue, and removes it if it was written. If the write
+     * failed it stays queued for the next connection, where newer commands may supersede it.
+     */
+    private void finishWrite(boolean written) {
+        synchronized (mLock) {
+            if (!mWriting) {
+                // The queue was cleared by stop() while writing
+                return;
+            }
+            mWriting = false;
+            if (written) {
+                mQueue[mHead] = null;
+                mHead = (mHead + 1) % mQueue.length;
+                mCount--;
+            }
+        }
+    }
+
+    /**
+     * Publishes the state of the connection, unless this writer thread has been stopped and is
+     * only winding down.
+     */
+    private void setState(State state) {
+        synchronized (mLock) {
+            if (isCurrent()) {
+                mState = state;
+            }
+        }
+    }
+
+    /**
+     * Writes the next command, or a keep-alive if there has been none for a while.
+     *
+     * @throws IOException If the write failed, or the server has not acknowledged anything for
+     * longer than the reply timeout
+     */
+    private void writeNext(int[] duration, long[] queuedNs)
+            throws IOException, InterruptedException {
+        if (mUnansweredNs != 0 && mWriter.getLastReplyNs() >= mUnansweredNs) {
+            mUnansweredNs = 0;
+        }
+        long nowNs = System.nanoTime();
+        if (mKeepAliveMs > 0 && mUnansweredNs != 0
+                && (nowNs - mUnansweredNs) / 1000000 >= mReplyTimeoutMs) {
+            throw new IOException("No reply from the stand in " + mReplyTimeoutMs + "ms");
+        }
+
+        long waitMs = 0;
+        if (mKeepAliveMs > 0) {
+            waitMs = Math.max(1, mKeepAliveMs - (nowNs - mLastWriteNs) / 1000000);
+        }
+        Command command = peek(waitMs, duration, queuedNs);
+        long startNs = System.nanoTime();
+        if (command != null) {
+            try {
+                mWriter.write(command, duration[0], queuedNs[0] / 1000);
+            } catch (IOException e) {
+                finishWrite(false);
+                throw e;
+            }
+            finishWrite(true);
+            if (mLatency != null) {
+                long endNs = System.nanoTime();
+                mLatency.record(PipelineLatency.Stage.QUEUE_WAIT, queuedNs[0], startNs);
+                mLatency.record(PipelineLatency.Stage.WRITE, startNs, endNs);
+            }
+        } else if (isCurrent() && mKeepAliveMs > 0
+                && (startNs - mLastWriteNs) / 1000000 >= mKeepAliveMs) {
+            mWriter.ping(startNs / 1000);
+        } else {
+            return;
+        }
+        mLastWriteNs = startNs;
+        if (mUnansweredNs == 0) {
+            mUnansweredNs = startNs;
+        }
+    }
+
+    private void writeLoop() {
+        State state = State.CONNECTING;
+        int attempt = 0;
+        long backoff = MIN_BACKOFF_MS;
+        int[] duration = new int[1];
+        long[] queuedNs = new long[1];
+        try {
+            while (isCurrent()) {
+                try {
+                    switch (state) {
+                        case CONNECTING:
+                            mWriter.connect();
+                            if (!isCurrent()) {
+                                // Stopped while connecting, stop() closes the connection
+                                break;
+                            }
+                            state = State.CONNECTED;
+                            setState(state);
+                            attempt = 0;
+                            backoff = MIN_BACKOFF_MS;
+                            mLastWriteNs = System.nanoTime();
+                            mUnansweredNs = 0;
+                            if (mListener != null) {
+                                mListener.onConnected();
+                            }
+                            break;
+
+                        case CONNECTED:
+                            writeNext(duration, queuedNs);
+                            break;
+
+                        case BACKOFF:
+                            // The command stays queued, and may be superseded while we wait
+                            Thread.sleep(backoff);
+                            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                            state = State.CONNECTING;
+                            setState(state);
+                            break;
+                    }
+                } catch (IOException e) {
+                    if (!isCurrent()) {
+                        // stop() closed the connection under us
+                        break;
+                    }
+                    mWriter.close();
+                    state = State.BACKOFF;
+                    setState(state);
+                    attempt++;
+                    if (mListener != null) {
+                        mListener.onConnectionFailed(attempt, backoff, e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped, unless something else interrupted the thread
+            boolean current;
+            synchronized (mLock) {
+                current = isCurrent();
+                if (current) {
+                    mThread = null;
+                    mState = State.STOPPED;
+                }
+            }
+            if (current) {
+                mWriter.close();
+            }
+        }
+    }
+}
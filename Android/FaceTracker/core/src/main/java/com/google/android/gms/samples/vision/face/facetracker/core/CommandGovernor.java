@@ -0,0 +1,176 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Sits in front of the stand's {@link CommandSink} and drops commands that would not change
+ * anything, or that come too soon after the last one for the same axis. Every command that gets
+ * through costs a Bluetooth write and a USB transfer on the Pi, and the face steering, sound
+ * acquisition and rhythm code all send commands without knowing what the others have sent.<p>
+ *
+ * The governor keeps track of what the stand is doing: stopped, moving until the next command, or
+ * moving until a timed move ends. A command is dropped as a repeat if the stand would be doing the
+ * same afterwards, e.g. a stop while stopped, a continuous move in the direction it is already
+ * moving continuously, or a timed move in the same direction that ends when the one in progress
+ * does. LED commands are dropped if the LED is already in that state.<p>
+ *
+ * Moves on an axis (pan for left and right, tilt for up and down) are also dropped if the last
+ * move on that axis was sent less than the minimum interval ago. Dropped moves are not sent later,
+ * the steering code sends a fresh one on a later frame if it still wants to move. Stops and
+ * {@link Command#ZERO} are never rate limited, so the stand can always be stopped.<p>
+ *
+ * Thread safe, since commands come from the detector and the audio thread.
+ */
+public class CommandGovernor implements CommandSink {
+    public static final int DEFAULT_MIN_PAN_INTERVAL_MS = 100;
+    public static final int DEFAULT_MIN_TILT_INTERVAL_MS = 100;
+
+    // The stand moves until the next command
+    private static final long UNTIL_NEXT = Long.MAX_VALUE;
+
+    private final CommandSink mSink;
+    private final Clock mClock;
+    private int mMinPanIntervalMs = DEFAULT_MIN_PAN_INTERVAL_MS;
+    private int mMinTiltIntervalMs = DEFAULT_MIN_TILT_INTERVAL_MS;
+
+    // What the stand is doing, guarded by this. The move is null while stopped or unknown.
+    private Command mMove;
+    private long mMoveEndMs;
+    private boolean mStopped;
+    private Command mLed;
+    private long mLastPanMs;
+    private long mLastTiltMs;
+
+    private volatile int mEmitted;
+    private volatile int mRepeats;
+    private volatile int mRateLimited;
+
+    public CommandGovernor(CommandSink sink) {
+        this(sink, Clock.SYSTEM);
+    }
+
+    public CommandGovernor(CommandSink sink, Clock clock) {
+        mSink = sink;
+        mClock = clock;
+        reset();
+    }
+
+    /**
+     * @param minPanIntervalMs Minimum time between two left or right moves
+     * @param minTiltIntervalMs Minimum time between two up or down moves
+     */
+    public synchronized void setMinIntervals(int minPanIntervalMs, int minTiltIntervalMs) {
+        mMinPanIntervalMs = minPanIntervalMs;
+        mMinTiltIntervalMs = minTiltIntervalMs;
+    }
+
+    @Override
+    public synchronized void send(Command command, int durationMs) {
+        long now = mClock.getTimeMs();
+        if (mMove != null && now >= mMoveEndMs) {
+            // The timed move has ended, and the stand stopped by itself
+            mMove = null;
+            mStopped = true;
+        }
+
+        switch (command) {
+            case STOP:
+                if (mStopped) {
+                    mRepeats++;
+                    return;
+                }
+                mMove = null;
+                mStopped = true;
+                break;
+            case LEFT:
+            case RIGHT:
+            case UP:
+            case DOWN:
+                long endMs = durationMs > 0 ? now + durationMs : UNTIL_NEXT;
+                if (command == mMove && isRepeat(endMs)) {
+                    mRepeats++;
+                    return;
+                }
+                boolean pan = command == Command.LEFT || command == Command.RIGHT;
+                long lastMs = pan ? mLastPanMs : mLastTiltMs;
+                int minIntervalMs = pan ? mMinPanIntervalMs : mMinTiltIntervalMs;
+                if (now - lastMs < minIntervalMs) {
+                    mRateLimited++;
+                    return;
+                }
+                if (pan) {
+                    mLastPanMs = now;
+                } else {
+                    mLastTiltMs = now;
+                }
+                mMove = command;
+                mMoveEndMs = endMs;
+                mStopped = false;
+                break;
+            case LED_ON:
+            case LED_OFF:
+                if (command == mLed) {
+                    mRepeats++;
+                    return;
+                }
+                mLed = command;
+                break;
+            case ZERO:
+                // Ends with the stand stopped, but it keeps moving for a while before that
+                mMove = null;
+                mStopped = false;
+                break;
+        }
+        mEmitted++;
+        mSink.send(command, durationMs);
+    }
+
+    /**
+     * @return Whether a move in the direction the stand is moving in, ending at endMs, would leave
+     * it doing the same
+     */
+    private boolean isRepeat(long endMs) {
+        // The server cuts a timed move short for a new one, so a move that ends sooner stops the
+        // stand sooner and one that ends later keeps it going
+        return endMs == mMoveEndMs;
+    }
+
+    /**
+     * Forgets what the stand is doing, so the next command of each kind is sent whatever it is,
+     * e.g. after reconnecting to the stand.
+     */
+    public synchronized void reset() {
+        mMove = null;
+        mMoveEndMs = 0;
+        mStopped = false;
+        mLed = null;
+        mLastPanMs = Long.MIN_VALUE / 2;
+        mLastTiltMs = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * @return Number of commands passed on to the stand
+     */
+    public int getEmittedCount() {
+        return mEmitted;
+    }
+
+    /**
+     * @return Number of commands dropped, as repeats or by the rate limit
+     */
+    public int getSuppressedCount() {
+        return mRepeats + mRateLimited;
+    }
+
+    /**
+     * @return Number of commands dropped because they would not have changed what the stand does
+     */
+    public int getRepeatCount() {
+        return mRepeats;
+    }
+
+    /**
+     * @return Number of moves dropped because they came too soon after the last one on their axis
+     */
+    public int getRateLimitedCount() {
+        return mRateLimited;
+    }
+}
@@ -0,0 +1,147 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Works out how long commands take to reach the stand's motors from the server's
+ * {@link CommandAck}s, over a rolling window of the latest commands.<p>
+ *
+ * The app and the server have separate clocks, so the offset between them is estimated the way
+ * NTP does: for each command, the round trip over the link is the time from sending it to
+ * getting the ack, minus the time the server held on to it. The offset from the command with the
+ * shortest round trip in the window is the most accurate one, off by at most half that round
+ * trip. The latency of each command is then the server's USB transfer time moved onto the app's
+ * clock, minus the time the command was sent.<p>
+ *
+ * Thread safe. Acks come in on the connection's reader thread, and the results are read from
+ * the UI thread.
+ */
+public class CommandLatency {
+    public static final int DEFAULT_WINDOW = 256;
+
+    // Times of each command in the window, in us: sent and acked on the app's clock, received and
+    // done on the server's
+    private final long[] mSentUs;
+    private final long[] mReceivedUs;
+    private final long[] mDoneUs;
+    private final long[] mAckedUs;
+    private int mNext;
+    private int mCount;
+    private long mTotal;
+    // For sorting the window when working out percentiles
+    private final long[] mScratch;
+
+    public CommandLatency() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window Number of the latest commands to work out the latency and the offset from
+     */
+    public CommandLatency(int window) {
+        mSentUs = new long[window];
+        mReceivedUs = new long[window];
+        mDoneUs = new long[window];
+        mAckedUs = new long[window];
+        mScratch = new long[window];
+    }
+
+    /**
+     * Adds an acknowledgement.
+     *
+     * @param ackedUs When the ack arrived, on the same clock as the command's timestamp
+     */
+    public synchronized void onAck(CommandAck ack, long ackedUs) {
+        mSentUs[mNext] = ack.getSentUs();
+        mReceivedUs[mNext] = ack.getServerReceivedUs();
+        mDoneUs[mNext] = ack.getServerDoneUs();
+        mAckedUs[mNext] = ackedUs;
+        mNext = (mNext + 1) % mSentUs.length;
+        mCount = Math.min(mCount + 1, mSentUs.length);
+        mTotal++;
+    }
+
+    public synchronized void reset() {
+        mNext = 0;
+        mCount = 0;
+    }
+
+    /**
+     * @return Number of acks received since this was created
+     */
+    public synchronized long getTotalCount() {
+        return mTotal;
+    }
+
+    /**
+     * @return Server clock minus app clock in us, or 0 if there are no acks in the window
+     */
+    public synchronized long getClockOffsetUs() {
+        int best = getShortestRoundTrip();
+        return best < 0 ? 0 : getOffset(best);
+    }
+
+    /**
+     * @return The round trip of the given percentile of the commands in the window, in us
+     */
+    public synchronized long getRoundTripUs(double percentile) {
+        for (int i = 0; i < mCount; i++) {
+            mScratch[i] = getRoundTrip(i);
+        }
+        return getPercentile(percentile);
+    }
+
+    /**
+     * @return The time from sending a command to its USB transfer being done, for the given
+     * percentile of the commands in the window, in us
+     */
+    public synchronized long getLatencyUs(double percentile) {
+        int best = getShortestRoundTrip();
+        if (best < 0) {
+            return 0;
+        }
+        long offset = getOffset(best);
+        for (int i = 0; i < mCount; i++) {
+            mScratch[i] = mDoneUs[i] - offset - mSentUs[i];
+        }
+        return getPercentile(percentile);
+    }
+
+    /**
+     * Appends one line with the latency and round trip percentiles and the clock offset.
+     */
+    public void appendSummary(StringBuilder out) {
+        out.append(String.format(Locale.US,
+                "MOTOR      n=%-6d p50 %6.1f  p99 %6.1f  rtt %5.1f  offset %+.1f ms%n",
+                getTotalCount(), getLatencyUs(50) / 1000.0, getLatencyUs(99) / 1000.0,
+                getRoundTripUs(50) / 1000.0, getClockOffsetUs() / 1000.0));
+    }
+
+    private long getRoundTrip(int i) {
+        return (mAckedUs[i] - mSentUs[i]) - (mDoneUs[i] - mReceivedUs[i]);
+    }
+
+    private long getOffset(int i) {
+        return ((mReceivedUs[i] - mSentUs[i]) + (mDoneUs[i] - mAckedUs[i])) / 2;
+    }
+
+    private int getShortestRoundTrip() {
+        int best = -1;
+        for (int i = 0; i < mCount; i++) {
+            if (best < 0 || getRoundTrip(i) < getRoundTrip(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        Arrays.sort(mScratch, 0, mCount);
+        int index = (int) Math.ceil(percentile / 100 * mCount) - 1;
+        return mScratch[Math.max(0, Math.min(index, mCount - 1))];
+    }
+}
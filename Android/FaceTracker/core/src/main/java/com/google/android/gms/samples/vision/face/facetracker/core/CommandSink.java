@@ -0,0 +1,18 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Receives the commands produced by the steering logic, e.g. to send them to the stand.
+ */
+public interface CommandSink {
+
+    /**
+     * Duration for moves that keep going until the next command.
+     */
+    int CONTINUOUS = 0;
+
+    /**
+     * @param durationMs For movement commands, how long to move for before stopping, or
+     *                   {@link #CONTINUOUS}. Ignored for other commands
+     */
+    void send(Command command, int durationMs);
+}
@@ -0,0 +1,39 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte stream connection to the stand that a {@link StreamCommandWriter} sends its frames over,
+ * e.g. an RFCOMM socket on the phone, a TCP socket to a server on Wi-Fi or a local stand-in, or
+ * an in-memory pipe.<p>
+ *
+ * Opened, written and closed from the {@link CommandDispatcher} writer thread. The input stream is
+ * read from the writer's acknowledgement thread. When the dispatcher stops, it interrupts the writer
+ * thread and then closes the transport from its own thread, which has to abort an open in progress.
+ */
+public interface CommandTransport {
+
+    /**
+     * Opens a new connection. Only called when the transport is closed. If it blocks, it must fail
+     * once {@link #close()} is called, or if the thread was interrupted before it started
+     * blocking.
+     */
+    void open() throws IOException;
+
+    /**
+     * @return Whether the connection is open, as far as the transport knows without writing to it
+     */
+    boolean isOpen();
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Closes the connection, which also ends a read in progress on its input stream and an open in
+     * progress. Does nothing if it is closed already. May be called from any thread.
+     */
+    void close();
+}
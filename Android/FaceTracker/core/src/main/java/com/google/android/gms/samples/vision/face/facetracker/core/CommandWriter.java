@@ -0,0 +1,38 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.IOException;
+
+/**
+ * Blocking connection to the stand, used from the {@link CommandDispatcher} writer thread only.
+ */
+public interface CommandWriter {
+
+    /**
+     * Opens the connection if it is not open already.
+     */
+    void connect() throws IOException;
+
+    /**
+     * @param durationMs See {@link CommandSink#send(Command, int)}
+     * @param timestampUs When the command was sent, in us from {@link System#nanoTime()}
+     */
+    void write(Command command, int durationMs, long timestampUs) throws IOException;
+
+    /**
+     * Writes a keep-alive, which the server acknowledges without doing anything.
+     *
+     * @param timestampUs When it was sent, in us from {@link System#nanoTime()}
+     */
+    void ping(long timestampUs) throws IOException;
+
+    /**
+     * @return {@link System#nanoTime()} when the server last acknowledged anything on the current
+     * connection, or when the connection was opened if it has not yet
+     */
+    long getLastReplyNs();
+
+    /**
+     * Closes the connection. The next {@link #connect()} opens a new one.
+     */
+    void close();
+}
@@ -0,0 +1,104 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Decides how much effort to spend on face detection for each camera frame. Steering only needs
+ * the position of the face, so once the face is centered the cheaper fast mode is enough, and once
+ * it has also stopped moving most frames can be skipped altogether. As soon as a face leaves the
+ * center, or no face is found, detection goes back to the accurate mode on every frame.<p>
+ *
+ * For each frame, call {@link #shouldDetect()} and, if it returns true, run the detector picked by
+ * {@link #getMode()} and report the results with {@link #onDetections(int, float, float, boolean)}.
+ */
+public class DetectionRatePolicy {
+    public static final int DEFAULT_STABLE_FRAMES = 15;
+    public static final int DEFAULT_IDLE_INTERVAL = 5;
+    public static final float DEFAULT_MOVEMENT_THRESHOLD = 0.02f;
+
+    public enum Mode {
+        // Accurate detection on every frame
+        ACCURATE,
+        // Fast detection on every frame
+        FAST,
+        // Fast detection on one frame in every idle interval
+        IDLE
+    }
+
+    private int mStableFrames = DEFAULT_STABLE_FRAMES;
+    private int mIdleInterval = DEFAULT_IDLE_INTERVAL;
+    private float mMovementThreshold = DEFAULT_MOVEMENT_THRESHOLD;
+
+    private Mode mMode = Mode.ACCURATE;
+    private int mFramesStable;
+    private int mFramesSkipped;
+    private int mLastFaceCount;
+    private float mLastX;
+    private float mLastY;
+
+    /**
+     * @param stableFrames How many detections in a row the faces have to stay put to go idle
+     * @param idleInterval Run detection on one frame in this many while idle
+     * @param movementThreshold How far the faces can move between detections and still count as
+     *                          not moving, as a fraction of the frame size
+     */
+    public void setThresholds(int stableFrames, int idleInterval, float movementThreshold) {
+        mStableFrames = stableFrames;
+        mIdleInterval = idleInterval;
+        mMovementThreshold = movementThreshold;
+    }
+
+    /**
+     * Called once per camera frame.
+     *
+     * @return True if the frame should be run through the detector, false to reuse the last results
+     */
+    public boolean shouldDetect() {
+        if (mMode != Mode.IDLE || ++mFramesSkipped >= mIdleInterval) {
+            mFramesSkipped = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Which detector to run on frames that {@link #shouldDetect()} lets through
+     */
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Reports what the detector found.
+     *
+     * @param faceCount Number of faces found
+     * @param x Mean horizontal position of the faces, as a fraction of the frame width
+     * @param y Mean vertical position of the faces, as a fraction of the frame height
+     * @param allCentered True if every face is in the center region
+     */
+    public void onDetections(int faceCount, float x, float y, boolean allCentered) {
+        boolean moved = faceCount != mLastFaceCount
+                || Math.abs(x - mLastX) > mMovementThreshold
+                || Math.abs(y - mLastY) > mMovementThreshold;
+        mLastFaceCount = faceCount;
+        mLastX = x;
+        mLastY = y;
+
+        if (faceCount == 0 || !allCentered) {
+            mMode = Mode.ACCURATE;
+            mFramesStable = 0;
+        } else if (moved) {
+            mMode = Mode.FAST;
+            mFramesStable = 0;
+        } else if (++mFramesStable >= mStableFrames) {
+            mMode = Mode.IDLE;
+        } else if (mMode == Mode.ACCURATE) {
+            mMode = Mode.FAST;
+        }
+    }
+
+    public void reset() {
+        mMode = Mode.ACCURATE;
+        mFramesStable = 0;
+        mFramesSkipped = 0;
+        mLastFaceCount = 0;
+    }
+}
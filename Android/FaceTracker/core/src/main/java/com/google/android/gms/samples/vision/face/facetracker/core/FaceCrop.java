@@ -0,0 +1,213 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Works out which part of a camera frame to run face detection on. While exactly one face is
+ * locked, only a padded box around its last position is searched. Every so often, and whenever
+ * the face is not found in the box, the whole frame is searched again.<p>
+ *
+ * Faces are given in upright coordinates, i.e. after the frame's rotation is applied, while the
+ * crop box is in the coordinates of the camera buffer. The rotation follows the camera frame
+ * convention: 0 to 3 quarter turns clockwise take the buffer to upright.
+ */
+public class FaceCrop {
+    public static final float DEFAULT_PADDING = 1f;
+    public static final int DEFAULT_FULL_SCAN_INTERVAL = 30;
+    // Cropping to more than this fraction of the frame isn't worth the copy
+    public static final float MAX_CROP_FRACTION = 0.6f;
+
+    private float mPadding = DEFAULT_PADDING;
+    private int mFullScanInterval = DEFAULT_FULL_SCAN_INTERVAL;
+
+    private boolean mLocked;
+    private int mFramesSinceFullScan;
+    private float mFaceX;
+    private float mFaceY;
+    private float mFaceWidth;
+    private float mFaceHeight;
+
+    private int mLeft;
+    private int mTop;
+    private int mWidth;
+    private int mHeight;
+    private float mOffsetX;
+    private float mOffsetY;
+
+    /**
+     * @param padding How much to add around the face on each side, relative to the face size
+     * @param fullScanInterval Search the whole frame at least once in this many frames
+     */
+    public void setParameters(float padding, int fullScanInterval) {
+        mPadding = padding;
+        mFullScanInterval = fullScanInterval;
+    }
+
+    /**
+     * Works out the crop box for the next frame.
+     *
+     * @param rotation Number of quarter turns clockwise from the buffer to upright
+     * @return True if the frame should be cropped to {@link #getLeft()}, {@link #getTop()},
+     * {@link #getWidth()} and {@link #getHeight()}, false if the whole frame should be searched
+     */
+    public boolean prepare(int bufferWidth, int bufferHeight, int rotation) {
+        if (!mLocked || ++mFramesSinceFullScan >= mFullScanInterval) {
+            return false;
+        }
+
+        boolean swap = (rotation & 1) == 1;
+        float uprightWidth = swap ? bufferHeight : bufferWidth;
+        float uprightHeight = swap ? bufferWidth : bufferHeight;
+
+        float padX = mFaceWidth * mPadding;
+        float padY = mFaceHeight * mPadding;
+        float left = Math.max(0, mFaceX - padX);
+        float top = Math.max(0, mFaceY - padY);
+        float right = Math.min(uprightWidth, mFaceX + mFaceWidth + padX);
+        float bottom = Math.min(uprightHeight, mFaceY + mFaceHeight + padY);
+        if ((right - left) * (bottom - top) > MAX_CROP_FRACTION * uprightWidth * uprightHeight) {
+            return false;
+        }
+
+        // Map two opposite corners to the buffer, then snap to even pixels for the NV21 chroma
+        float x0 = toBufferX(left, top, bufferWidth, bufferHeight, rotation);
+        float y0 = toBufferY(left, top, bufferWidth, bufferHeight, rotation);
+        float x1 = toBufferX(right, bottom, bufferWidth, bufferHeight, rotation);
+        float y1 = toBufferY(right, bottom, bufferWidth, bufferHeight, rotation);
+        mLeft = ((int) Math.min(x0, x1)) & ~1;
+        mTop = ((int) Math.min(y0, y1)) & ~1;
+        mWidth = Math.min(bufferWidth - mLeft, ((int) Math.ceil(Math.max(x0, x1)) - mLeft + 1) & ~1);
+        mHeight = Math.min(bufferHeight - mTop, ((int) Math.ceil(Math.max(y0, y1)) - mTop + 1) & ~1);
+        if (mWidth <= 0 || mHeight <= 0) {
+            return false;
+        }
+
+        // Upright position of the cropped box, which faces found in it are relative to
+        float u0 = toUprightX(mLeft, mTop, bufferWidth, bufferHeight, rotation);
+        float v0 = toUprightY(mLeft, mTop, bufferWidth, bufferHeight, rotation);
+        float u1 = toUprightX(mLeft + mWidth, mTop + mHeight, bufferWidth, bufferHeight, rotation);
+        float v1 = toUprightY(mLeft + mWidth, mTop + mHeight, bufferWidth, bufferHeight, rotation);
+        mOffsetX = Math.min(u0, u1);
+        mOffsetY = Math.min(v0, v1);
+        return true;
+    }
+
+    /**
+     * Reports the result of searching the whole frame. Locks onto the face if there is only one.
+     */
+    public void onFullScan(int faceCount, float x, float y, float width, float height) {
+        mFramesSinceFullScan = 0;
+        mLocked = faceCount == 1;
+        if (mLocked) {
+            setFace(x, y, width, height);
+        }
+    }
+
+    /**
+     * Reports the result of searching the crop box, in upright frame coordinates.
+     */
+    public void onCropScan(boolean found, float x, float y, float width, float height) {
+        mLocked = found;
+        if (found) {
+            setFace(x, y, width, height);
+        }
+    }
+
+    public boolean isLocked() {
+        return mLocked;
+    }
+
+    public void reset() {
+        mLocked = false;
+        mFramesSinceFullScan = 0;
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return What to add to the x position of a face found in the crop box to get its position in
+     * the upright frame
+     */
+    public float getOffsetX() {
+        return mOffsetX;
+    }
+
+    /**
+     * @return What to add to the y position of a face found in the crop box to get its position in
+     * the upright frame
+     */
+    public float getOffsetY() {
+        return mOffsetY;
+    }
+
+    private void setFace(float x, float y, float width, float height) {
+        mFaceX = x;
+        mFaceY = y;
+        mFaceWidth = width;
+        mFaceHeight = height;
+    }
+
+    private static float toBufferX(float u, float v, int width, int height, int rotation) {
+        switch (rotation & 3) {
+            case 1:
+                return v;
+            case 2:
+                return width - u;
+            case 3:
+                return width - v;
+            default:
+                return u;
+        }
+    }
+
+    private static float toBufferY(float u, float v, int width, int height, int rotation) {
+        switch (rotation & 3) {
+            case 1:
+                return height - u;
+            case 2:
+                return height - v;
+            case 3:
+                return u;
+            default:
+                return v;
+        }
+    }
+
+    private static float toUprightX(float x, float y, int width, int height, int rotation) {
+        switch (rotation & 3) {
+            case 1:
+                return height - y;
+            case 2:
+                return width - x;
+            case 3:
+                return y;
+            default:
+                return x;
+        }
+    }
+
+    private static float toUprightY(float x, float y, int width, int height, int rotation) {
+        switch (rotation & 3) {
+            case 1:
+                return x;
+            case 2:
+                return height - y;
+            case 3:
+                return width - x;
+            default:
+                return y;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Gives faces found by more than one detector IDs that stay the same when detection switches
+ * between them. Each detector tracks faces on its own, so the other detector gives the same person
+ * a new ID, and both hand out IDs from the same range, so one ID can mean two people. Everything
+ * that keeps state per face, from the trackers to the motion filter and the target selector, needs
+ * one ID per person.<p>
+ *
+ * A face keeps its ID for as long as the detector that found it reports the same ID for it. A face
+ * with an ID not seen from its detector before takes over the ID of the face from the earlier
+ * frames it overlaps most, as long as they overlap by at least {@link #DEFAULT_MIN_OVERLAP} of the
+ * area they cover together, and gets a new ID otherwise. A new ID is the one its detector gave
+ * it if no face has had that ID yet, so faces often keep their own IDs. Faces not seen for
+ * {@link #DEFAULT_MAX_MISSED_FRAMES} detected frames are forgotten.<p>
+ *
+ * The state lives in primitive arrays with room for {@link #MAX_FACES} faces, so matching never
+ * allocates; faces beyond that get a new ID every frame. Not thread safe.
+ */
+public class FaceIdMatcher {
+    public static final int MAX_FACES = 16;
+    public static final float DEFAULT_MIN_OVERLAP = 0.3f;
+    public static final int DEFAULT_MAX_MISSED_FRAMES = 3;
+
+    private static final int NONE = -1;
+
+    private float mMinOverlap = DEFAULT_MIN_OVERLAP;
+    private int mMaxMissedFrames = DEFAULT_MAX_MISSED_FRAMES;
+
+    // Stable ID of each slot, NONE for a free slot
+    private final int[] mIds = new int[MAX_FACES];
+    // Detector that last found the face, and the ID it gave it
+    private final int[] mSources = new int[MAX_FACES];
+    private final int[] mSourceIds = new int[MAX_FACES];
+    // Box of the face when it was last found, in preview pixels
+    private final float[] mLeft = new float[MAX_FACES];
+    private final float[] mTop = new float[MAX_FACES];
+    private final float[] mRight = new float[MAX_FACES];
+    private final float[] mBottom = new float[MAX_FACES];
+    private final int[] mMissedFrames = new int[MAX_FACES];
+    private final boolean[] mMatched = new boolean[MAX_FACES];
+    // Slot of each face of the current frame, grown if a frame has more faces than ever before
+    private int[] mFaceSlots = new int[MAX_FACES];
+    private int mNextId;
+
+    public FaceIdMatcher() {
+        reset();
+    }
+
+    /**
+     * @param minOverlap Intersection over union two boxes need for a new face to take over the ID
+     *                   of an earlier one, between 0 and 1
+     */
+    public void setMinOverlap(float minOverlap) {
+        mMinOverlap = minOverlap;
+    }
+
+    public void setMaxMissedFrames(int maxMissedFrames) {
+        mMaxMissedFrames = maxMissedFrames;
+    }
+
+    /**
+     * Replaces the IDs of the faces of one detected frame with stable IDs.
+     *
+     * @param source Which detector found the faces, any number that is the same for each detector
+     * @param faces Faces of the frame with the IDs their detector gave them; each is set to the
+     *              same face with its stable ID
+     * @param count Number of faces in the frame
+     */
+    public void map(int source, FaceObservation[] faces, int count) {
+        if (mFaceSlots.length < count) {
+            mFaceSlots = new int[count];
+        }
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            mMatched[slot] = false;
+        }
+
+        // Faces their detector still knows keep their slot
+        for (int i = 0; i < count; i++) {
+            int slot = find(source, faces[i].getId());
+            mFaceSlots[i] = slot;
+            if (slot != NONE) {
+                mMatched[slot] = true;
+            }
+        }
+        // New ones take over the slot of the face they overlap most, or a free one
+        for (int i = 0; i < count; i++) {
+            if (mFaceSlots[i] != NONE) {
+                continue;
+            }
+            int slot = findOverlapping(faces[i]);
+            if (slot == NONE) {
+                slot = allocate();
+                if (slot != NONE) {
+                    mIds[slot] = newId(faces[i].getId());
+                }
+            }
+            mFaceSlots[i] = slot;
+            if (slot != NONE) {
+                mMatched[slot] = true;
+            }
+        }
+
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            if (mIds[slot] != NONE && !mMatched[slot] && ++mMissedFrames[slot] > mMaxMissedFrames) {
+                mIds[slot] = NONE;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            FaceObservation face = faces[i];
+            int slot = mFaceSlots[i];
+            int id;
+            if (slot == NONE) {
+                id = newId(face.getId());
+            } else {
+                mSources[slot] = source;
+                mSourceIds[slot] = face.getId();
+                mLeft[slot] = face.getX();
+                mTop[slot] = face.getY();
+                mRight[slot] = face.getX() + face.getWidth();
+                mBottom[slot] = face.getY() + face.getHeight();
+                mMissedFrames[slot] = 0;
+                id = mIds[slot];
+            }
+            face.set(id, face.getTimestampMs(), face.getX(), face.getY(), face.getWidth(),
+                    face.getHeight());
+        }
+    }
+
+    /**
+     * @return The ID the given detector uses for a face, or -1 if another detector found it last
+     */
+    public int getSourceId(int id, int source) {
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            if (mIds[slot] == id) {
+                return mSources[slot] == source ? mSourceIds[slot] : NONE;
+            }
+        }
+        return NONE;
+    }
+
+    public void reset() {
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            mIds[slot] = NONE;
+        }
+    }
+
+    /**
+     * @return The ID the detector gave the face if it was never handed out, or the next unused one
+     */
+    private int newId(int sourceId) {
+        if (sourceId >= mNextId) {
+            mNextId = sourceId + 1;
+            return sourceId;
+        }
+        return mNextId++;
+    }
+
+    private int find(int source, int sourceId) {
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            if (mIds[slot] != NONE && !mMatched[slot] && mSources[slot] == source
+                    && mSourceIds[slot] == sourceId) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private int findOverlapping(FaceObservation face) {
+        float left = face.getX();
+        float top = face.getY();
+        float right = left + face.getWidth();
+        float bottom = top + face.getHeight();
+        float area = face.getWidth() * face.getHeight();
+
+        int best = NONE;
+        float bestOverlap = mMinOverlap;
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            if (mIds[slot] == NONE || mMatched[slot]) {
+                continue;
+            }
+            float width = Math.min(right, mRight[slot]) - Math.max(left, mLeft[slot]);
+            float height = Math.min(bottom, mBottom[slot]) - Math.max(top, mTop[slot]);
+            if (width <= 0 || height <= 0) {
+                continue;
+            }
+            float intersection = width * height;
+            float union = area + (mRight[slot] - mLeft[slot]) * (mBottom[slot] - mTop[slot])
+                    - intersection;
+            float overlap = intersection / union;
+            if (overlap >= bestOverlap) {
+                best = slot;
+                bestOverlap = overlap;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return A free slot, or the one of the face missed for longest that was not found in this
+     * frame, or NONE if every slot has a face of this frame
+     */
+    private int allocate() {
+        int oldest = NONE;
+        for (int slot = 0; slot < MAX_FACES; slot++) {
+            if (mIds[slot] == NONE) {
+                return slot;
+            }
+            if (!mMatched[slot] && (oldest == NONE || mMissedFrames[slot] > mMissedFrames[oldest])) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,149 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Smooths the position of each face with a constant velocity alpha-beta filter, and extrapolates it
+ * to when a command sent now would reach the stand. By the time a frame has been through the
+ * detector, and a command through Bluetooth and the Pi, the face has moved on, so steering on the
+ * raw detection always chases where the face used to be.<p>
+ *
+ * Faces are kept apart by their tracking ID. The state lives in primitive arrays with room for
+ * {@link #MAX_FACES} faces, so updates never allocate; when a new face comes along and every slot
+ * is taken, the face that was seen longest ago is dropped. Not thread safe.
+ */
+public class FaceMotionFilter {
+    public static final int MAX_FACES = 16;
+    public static final float DEFAULT_ALPHA = 0.8f;
+    public static final float DEFAULT_BETA = 0.4f;
+    public static final int DEFAULT_LEAD_TIME_MS = 120;
+    // Faces not seen for this long start over instead of predicting from an old velocity
+    public static final int DEFAULT_MAX_GAP_MS = 500;
+
+    private static final int NO_FACE = -1;
+
+    private float mAlpha = DEFAULT_ALPHA;
+    private float mBeta = DEFAULT_BETA;
+    private int mLeadTimeMs = DEFAULT_LEAD_TIME_MS;
+    private int mMaxGapMs = DEFAULT_MAX_GAP_MS;
+
+    private final int[] mIds = new int[MAX_FACES];
+    private final long[] mTimestamps = new long[MAX_FACES];
+    // Filtered center of the face, in preview pixels
+    private final float[] mX = new float[MAX_FACES];
+    private final float[] mY = new float[MAX_FACES];
+    // Filtered velocity of the face, in preview pixels per millisecond
+    private final float[] mVelocityX = new float[MAX_FACES];
+    private final float[] mVelocityY = new float[MAX_FACES];
+
+    public FaceMotionFilter() {
+        reset();
+    }
+
+    /**
+     * @param alpha How much of the difference between the predicted and the detected position is
+     *              taken on each frame, between 0 (ignore detections) and 1 (no smoothing)
+     * @param beta How much of that difference is taken into the velocity, usually below alpha
+     */
+    public void setGains(float alpha, float beta) {
+        mAlpha = alpha;
+        mBeta = beta;
+    }
+
+    /**
+     * @param leadTimeMs How far past the capture time of a frame to predict the face position,
+     *                   i.e. the detection latency plus the time for a command to reach the stand
+     */
+    public void setLeadTime(int leadTimeMs) {
+        mLeadTimeMs = leadTimeMs;
+    }
+
+    public void setMaxGap(int maxGapMs) {
+        mMaxGapMs = maxGapMs;
+    }
+
+    /**
+     * Adds a detection of a face and predicts where it will be once a command can act on it.
+     *
+     * @param face Detected face, with the capture time of its frame
+     * @param out Set to the predicted face: same ID, size and timestamp, moved to the predicted
+     *            position. May be the same instance as face.
+     */
+    public void update(FaceObservation face, FaceObservation out) {
+        int id = face.getId();
+        long timestampMs = face.getTimestampMs();
+        float x = face.getCenterX();
+        float y = face.getCenterY();
+
+        int slot = find(id);
+        long dt = slot == NO_FACE ? 0 : timestampMs - mTimestamps[slot];
+        if (slot == NO_FACE || dt < 0 || dt > mMaxGapMs) {
+            if (slot == NO_FACE) {
+                slot = allocate(id);
+            }
+            mX[slot] = x;
+            mY[slot] = y;
+            mVelocityX[slot] = 0;
+            mVelocityY[slot] = 0;
+            mTimestamps[slot] = timestampMs;
+        } else if (dt > 0) {
+            float predictedX = mX[slot] + mVelocityX[slot] * dt;
+            float predictedY = mY[slot] + mVelocityY[slot] * dt;
+            float residualX = x - predictedX;
+            float residualY = y - predictedY;
+            mX[slot] = predictedX + mAlpha * residualX;
+            mY[slot] = predictedY + mAlpha * residualY;
+            mVelocityX[slot] += mBeta * residualX / dt;
+            mVelocityY[slot] += mBeta * residualY / dt;
+            mTimestamps[slot] = timestampMs;
+        }
+        // A dt of 0 is the same frame again, so there is nothing new to filter. Faces a detector
+        // repeats for a frame it skipped come with the new frame's time, so they must not be
+        // passed in at all, see AdaptiveFaceDetector#isRepeat
+
+        float width = face.getWidth();
+        float height = face.getHeight();
+        out.set(id, timestampMs,
+                mX[slot] + mVelocityX[slot] * mLeadTimeMs - width / 2,
+                mY[slot] + mVelocityY[slot] * mLeadTimeMs - height / 2,
+                width, height);
+    }
+
+    /**
+     * Forgets a face, e.g. once its tracker is done.
+     */
+    public void remove(int id) {
+        int slot = find(id);
+        if (slot != NO_FACE) {
+            mIds[slot] = NO_FACE;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < MAX_FACES; i++) {
+            mIds[i] = NO_FACE;
+        }
+    }
+
+    private int find(int id) {
+        for (int i = 0; i < MAX_FACES; i++) {
+            if (mIds[i] == id) {
+                return i;
+            }
+        }
+        return NO_FACE;
+    }
+
+    private int allocate(int id) {
+        int oldest = 0;
+        for (int i = 0; i < MAX_FACES; i++) {
+            if (mIds[i] == NO_FACE) {
+                oldest = i;
+                break;
+            }
+            if (mTimestamps[i] < mTimestamps[oldest]) {
+                oldest = i;
+            }
+        }
+        mIds[oldest] = id;
+        return oldest;
+    }
+}
@@ -0,0 +1,64 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * A single detection of a face, in the coordinates of the camera preview used for detection.
+ * Instances are meant to be reused from frame to frame, so the fields are set with
+ * {@link #set(int, long, float, float, float, float)} rather than a constructor.
+ */
+public class FaceObservation {
+    private int mId;
+    private long mTimestampMs;
+    private float mX;
+    private float mY;
+    private float mWidth;
+    private float mHeight;
+
+    /**
+     * @param id Tracking ID of the face
+     * @param timestampMs Time the camera frame was captured
+     * @param x Left edge of the face
+     * @param y Top edge of the face
+     * @param width Width of the face
+     * @param height Height of the face
+     */
+    public void set(int id, long timestampMs, float x, float y, float width, float height) {
+        mId = id;
+        mTimestampMs = timestampMs;
+        mX = x;
+        mY = y;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public long getTimestampMs() {
+        return mTimestampMs;
+    }
+
+    public float getX() {
+        return mX;
+    }
+
+    public float getY() {
+        return mY;
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public float getHeight() {
+        return mHeight;
+    }
+
+    public float getCenterX() {
+        return mX + mWidth / 2;
+    }
+
+    public float getCenterY() {
+        return mY + mHeight / 2;
+    }
+}
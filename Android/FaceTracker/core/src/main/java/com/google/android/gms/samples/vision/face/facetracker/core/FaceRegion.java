@@ -0,0 +1,68 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Section of the screen that a face is in. The screen is split into four sides by its diagonals
+ * and into three rings by two ovals around the center; the inner oval is a single center section.
+ */
+public enum FaceRegion {
+    CENTER(Side.CENTER, 0, "Center"),
+    UP_1(Side.UP, 1, "U-1"),
+    UP_2(Side.UP, 2, "U-2"),
+    DOWN_1(Side.DOWN, 1, "D-1"),
+    DOWN_2(Side.DOWN, 2, "D-2"),
+    LEFT_1(Side.LEFT, 1, "L-1"),
+    LEFT_2(Side.LEFT, 2, "L-2"),
+    RIGHT_1(Side.RIGHT, 1, "R-1"),
+    RIGHT_2(Side.RIGHT, 2, "R-2");
+
+    public enum Side {
+        CENTER, UP, DOWN, LEFT, RIGHT
+    }
+
+    // Indexed by [side.ordinal()][ring - 1], so lookups never allocate
+    private static final FaceRegion[][] BY_SIDE_AND_RING = {
+            {CENTER, CENTER},
+            {UP_1, UP_2},
+            {DOWN_1, DOWN_2},
+            {LEFT_1, LEFT_2},
+            {RIGHT_1, RIGHT_2},
+    };
+
+    private final Side mSide;
+    private final int mRing;
+    private final String mLabel;
+
+    FaceRegion(Side side, int ring, String label) {
+        mSide = side;
+        mRing = ring;
+        mLabel = label;
+    }
+
+    /**
+     * Returns the region for a side and a ring. Ring 0 is always {@link #CENTER}.
+     */
+    public static FaceRegion of(Side side, int ring) {
+        if (ring == 0) {
+            return CENTER;
+        }
+        return BY_SIDE_AND_RING[side.ordinal()][ring - 1];
+    }
+
+    public Side getSide() {
+        return mSide;
+    }
+
+    /**
+     * @return 0 for the center, 1 for the middle ring and 2 for the outer ring
+     */
+    public int getRing() {
+        return mRing;
+    }
+
+    /**
+     * @return Short label such as "L-2", used for logging and debug drawing
+     */
+    public String getLabel() {
+        return mLabel;
+    }
+}
@@ -0,0 +1,66 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Finds which {@link FaceRegion} a point on the overlay falls into. The oval radii are only
+ * recomputed when the overlay size changes, so classifying a point does no allocation and no
+ * divisions.
+ */
+public class FaceRegionClassifier {
+
+    // Fraction of the overlay covered by the center oval and the middle ring oval
+    public static final float CENTER_OVAL_SIZE = 0.33f;
+    public static final float RING_OVAL_SIZE = 0.55f;
+
+    private int mSizeX = -1;
+    private int mSizeY = -1;
+    private float mCenterX;
+    private float mCenterY;
+    private float mYToX;
+    // 1 / radius^2 for both ovals
+    private float mCenterInvRadiusX2;
+    private float mCenterInvRadiusY2;
+    private float mRingInvRadiusX2;
+    private float mRingInvRadiusY2;
+
+    public FaceRegion classify(int sizeX, int sizeY, int faceX, int faceY) {
+        if (sizeX != mSizeX || sizeY != mSizeY) {
+            resize(sizeX, sizeY);
+        }
+
+        float dx = faceX - mCenterX;
+        float dy = faceY - mCenterY;
+        float dx2 = dx * dx;
+        float dy2 = dy * dy;
+        if (dx2 * mCenterInvRadiusX2 + dy2 * mCenterInvRadiusY2 <= 1f) {
+            return FaceRegion.CENTER;
+        }
+        int ring = dx2 * mRingInvRadiusX2 + dy2 * mRingInvRadiusY2 <= 1f ? 1 : 2;
+
+        // Get the side by comparing against the diagonals, with y stretched to the x scale
+        float x = faceX;
+        float y = faceY * mYToX;
+        FaceRegion.Side side;
+        if (x > y) {
+            side = sizeX - x > y ? FaceRegion.Side.UP : FaceRegion.Side.RIGHT;
+        } else {
+            side = sizeX - x > y ? FaceRegion.Side.LEFT : FaceRegion.Side.DOWN;
+        }
+        return FaceRegion.of(side, ring);
+    }
+
+    private void resize(int sizeX, int sizeY) {
+        mSizeX = sizeX;
+        mSizeY = sizeY;
+        mCenterX = sizeX / 2;
+        mCenterY = sizeY / 2;
+        mYToX = sizeY == 0 ? 0f : (float) sizeX / (float) sizeY;
+        mCenterInvRadiusX2 = invSquare(sizeX * CENTER_OVAL_SIZE / 2f);
+        mCenterInvRadiusY2 = invSquare(sizeY * CENTER_OVAL_SIZE / 2f);
+        mRingInvRadiusX2 = invSquare(sizeX * RING_OVAL_SIZE / 2f);
+        mRingInvRadiusY2 = invSquare(sizeY * RING_OVAL_SIZE / 2f);
+    }
+
+    private static float invSquare(float radius) {
+        return radius == 0f ? Float.POSITIVE_INFINITY : 1f / (radius * radius);
+    }
+}
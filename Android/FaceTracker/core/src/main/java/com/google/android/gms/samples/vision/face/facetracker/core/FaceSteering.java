@@ -0,0 +1,86 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Turns face observations into stand commands: maps the face onto the overlay with the current
+ * {@link ViewTransform}, classifies its {@link FaceRegion} and hands it to a
+ * {@link SteeringPolicy}. With a {@link FaceMotionFilter} set, all of this uses the position the
+ * face is predicted to have by the time a command reaches the stand, rather than where it was
+ * detected.<p>
+ *
+ * Not thread safe. Everything that processes detections is called on the detector thread, so a
+ * single instance can be shared.
+ */
+public class FaceSteering {
+    private final FaceRegionClassifier mClassifier = new FaceRegionClassifier();
+    private final SteeringTarget mTarget = new SteeringTarget();
+    private final FaceObservation mPredicted = new FaceObservation();
+    private final SteeringPolicy mPolicy;
+    private final CommandSink mSink;
+    private FaceMotionFilter mFilter;
+
+    public FaceSteering(SteeringPolicy policy, CommandSink sink) {
+        mPolicy = policy;
+        mSink = sink;
+    }
+
+    /**
+     * @param filter Filter to predict face positions with, or null to steer on the detections
+     */
+    public void setMotionFilter(FaceMotionFilter filter) {
+        mFilter = filter;
+    }
+
+    /**
+     * Steers towards a newly detected face position.
+     *
+     * @param face Face in preview coordinates
+     * @param view Mapping from the preview to the overlay
+     * @return The region of the overlay the face is in
+     */
+    public FaceRegion update(FaceObservation face, ViewTransform view) {
+        if (mFilter != null) {
+            mFilter.update(face, mPredicted);
+            face = mPredicted;
+        }
+        int sizeX = view.getViewWidth();
+        int sizeY = view.getViewHeight();
+        int faceX = (int) view.getFaceX(face);
+        int faceY = (int) view.getFaceY(face);
+        FaceRegion region = mClassifier.classify(sizeX, sizeY, faceX, faceY);
+
+        mTarget.set(face.getId(), face.getTimestampMs(), region, faceX, faceY, sizeX, sizeY);
+        mPolicy.steer(mTarget, mSink);
+        return region;
+    }
+
+    /**
+     * Works out the region of the overlay a face is in, without steering towards it or predicting
+     * where it is going, e.g. for faces other than the one being followed.
+     *
+     * @see #update(FaceObservation, ViewTransform)
+     */
+    public FaceRegion classify(FaceObservation face, ViewTransform view) {
+        return mClassifier.classify(view.getViewWidth(), view.getViewHeight(),
+                (int) view.getFaceX(face), (int) view.getFaceY(face));
+    }
+
+    /**
+     * Forgets a face that is no longer tracked.
+     */
+    public void remove(int faceId) {
+        if (mFilter != null) {
+            mFilter.remove(faceId);
+        }
+    }
+
+    public void reset() {
+        mPolicy.reset();
+        if (mFilter != null) {
+            mFilter.reset();
+        }
+    }
+
+    public SteeringPolicy getPolicy() {
+        return mPolicy;
+    }
+}
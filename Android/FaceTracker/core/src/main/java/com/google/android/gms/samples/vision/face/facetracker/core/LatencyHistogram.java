@@ -0,0 +1,125 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in fixed buckets, in the style of HdrHistogram: values below 64us each get
+ * their own bucket, and every power of two above that is split into 32 buckets, so any value is
+ * off by at most about 3% and the whole range up to {@link #HIGHEST_TRACKABLE_US} fits in 1024
+ * counters. Recording a value is a few shifts and one counter increment, and never allocates.<p>
+ *
+ * Each histogram is meant to have a single thread recording into it. Any thread can read it at
+ * the same time, and may see the last few values only partly counted.
+ */
+public class LatencyHistogram {
+    // About 19 hours, longer values are counted as this
+    public static final long HIGHEST_TRACKABLE_US = (1L << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS
+            + (36 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private volatile long mCount;
+    private volatile long mSumUs;
+    private volatile long mMaxUs;
+
+    /**
+     * Counts one value. Only call from the recording thread.
+     */
+    public void record(long valueUs) {
+        if (valueUs < 0) {
+            valueUs = 0;
+        } else if (valueUs > HIGHEST_TRACKABLE_US) {
+            valueUs = HIGHEST_TRACKABLE_US;
+        }
+        int index = getIndex(valueUs);
+        mCounts.lazySet(index, mCounts.get(index) + 1);
+        mSumUs += valueUs;
+        if (valueUs > mMaxUs) {
+            mMaxUs = valueUs;
+        }
+        mCount++;
+    }
+
+    /**
+     * Clears all counts. Values recorded while this runs may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount = 0;
+        mSumUs = 0;
+        mMaxUs = 0;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMaxUs() {
+        return mMaxUs;
+    }
+
+    public long getMeanUs() {
+        long count = mCount;
+        return count == 0 ? 0 : mSumUs / count;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The value that the given percentage of the recorded values are at or below, rounded
+     * up to the end of its bucket, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = mCount;
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts.get(i);
+            if (seen >= target) {
+                return Math.min(getHighestValue(i), mMaxUs);
+            }
+        }
+        return mMaxUs;
+    }
+
+    /**
+     * @return Number of buckets, for going through them with {@link #getBucketCount(int)}
+     */
+    public int getBuckets() {
+        return BUCKETS;
+    }
+
+    public long getBucketCount(int index) {
+        return mCounts.get(index);
+    }
+
+    /**
+     * @return The largest value that is counted in the given bucket
+     */
+    public static long getHighestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    static int getIndex(long valueUs) {
+        if (valueUs < SUB_BUCKETS) {
+            return (int) valueUs;
+        }
+        // Keep the top SUB_BUCKET_BITS bits of the value, the first of which is always set
+        int shift = 63 - Long.numberOfLeadingZeros(valueUs) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS
+                + (int) (valueUs >> shift) - HALF_SUB_BUCKETS;
+    }
+}
@@ -0,0 +1,229 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Connects the command writer to a stand-in for the server in the same process, through a pair of
+ * in-memory pipes, so the link can be exercised as fast as the code allows without sockets or
+ * radios. The stand-in gets each connection from {@link #accept()}, the way a server socket would
+ * hand it over, and either end can close it.<p>
+ *
+ * The client end is used like any {@link CommandTransport}; {@link #accept()} is meant for one
+ * other thread.
+ */
+public class MemoryTransport implements CommandTransport {
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final int mBufferSize;
+    private final Object mLock = new Object();
+    // Opened by the client but not accepted yet, guarded by mLock
+    private Connection mPending;
+    private volatile Connection mClient;
+
+    public MemoryTransport() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize How many bytes each direction holds before writes block
+     */
+    public MemoryTransport(int bufferSize) {
+        mBufferSize = bufferSize;
+    }
+
+    @Override
+    public void open() {
+        Pipe toServer = new Pipe(mBufferSize);
+        Pipe toClient = new Pipe(mBufferSize);
+        mClient = new Connection(toClient, toServer);
+        synchronized (mLock) {
+            if (mPending != null) {
+                mPending.close();
+            }
+            mPending = new Connection(toServer, toClient);
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        Connection client = mClient;
+        return client != null && client.isOpen();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mClient.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mClient.getOutputStream();
+    }
+
+    @Override
+    public void close() {
+        Connection client = mClient;
+        if (client != null) {
+            client.close();
+        }
+        mClient = null;
+    }
+
+    /**
+     * Waits for the client to open a connection.
+     *
+     * @return The server end of the connection
+     */
+    public Connection accept() throws InterruptedException {
+        synchronized (mLock) {
+            while (mPending == null) {
+                mLock.wait();
+            }
+            Connection connection = mPending;
+            mPending = null;
+            return connection;
+        }
+    }
+
+    /**
+     * One end of an open connection. Closing either end closes both.
+     */
+    public static class Connection implements Closeable {
+        private final Pipe mIn;
+        private final Pipe mOut;
+        private final InputStream mInputStream;
+        private final OutputStream mOutputStream;
+
+        Connection(final Pipe in, final Pipe out) {
+            mIn = in;
+            mOut = out;
+            mInputStream = new InputStream() {
+                private final byte[] mByte = new byte[1];
+
+                @Override
+                public int read() throws IOException {
+                    return read(mByte, 0, 1) < 0 ? -1 : mByte[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public void close() {
+                    Connection.this.close();
+                }
+            };
+            mOutputStream = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    out.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() {
+                    Connection.this.close();
+                }
+            };
+        }
+
+        public InputStream getInputStream() {
+            return mInputStream;
+        }
+
+        public OutputStream getOutputStream() {
+            return mOutputStream;
+        }
+
+        public boolean isOpen() {
+            return !mOut.isClosed();
+        }
+
+        @Override
+        public void close() {
+            mIn.close();
+            mOut.close();
+        }
+    }
+
+    /**
+     * Bounded byte queue between one writing and one reading thread. Reads drain what is left
+     * after closing, then return end of stream; writes fail once closed.
+     */
+    static class Pipe {
+        private final byte[] mBuffer;
+        private int mHead;
+        private int mCount;
+        private boolean mClosed;
+
+        Pipe(int size) {
+            mBuffer = new byte[size];
+        }
+
+        synchronized void write(byte[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                while (!mClosed && mCount == mBuffer.length) {
+                    await();
+                }
+                if (mClosed) {
+                    throw new IOException("Pipe closed");
+                }
+                int tail = (mHead + mCount) % mBuffer.length;
+                int n = Math.min(length, Math.min(mBuffer.length - mCount, mBuffer.length - tail));
+                System.arraycopy(buffer, offset, mBuffer, tail, n);
+                mCount += n;
+                offset += n;
+                length -= n;
+                notifyAll();
+            }
+        }
+
+        synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (!mClosed && mCount == 0) {
+                await();
+            }
+            if (mCount == 0) {
+                return -1;
+            }
+            int n = Math.min(length, Math.min(mCount, mBuffer.length - mHead));
+            System.arraycopy(mBuffer, mHead, buffer, offset, n);
+            mHead = (mHead + n) % mBuffer.length;
+            mCount -= n;
+            notifyAll();
+            return n;
+        }
+
+        synchronized boolean isClosed() {
+            return mClosed;
+        }
+
+        synchronized void close() {
+            mClosed = true;
+            notifyAll();
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Keep the thread interrupted for whatever it does after the failed read or write
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
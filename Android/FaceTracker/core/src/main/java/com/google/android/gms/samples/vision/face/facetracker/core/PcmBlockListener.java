@@ -0,0 +1,18 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Receives blocks of 16 bit PCM audio as they are captured. Called on the capture thread for every
+ * block, so implementations should not block or allocate.
+ */
+public interface PcmBlockListener {
+    /**
+     * @param samples Samples from the current position to the limit, interleaved if there is more
+     *                than one channel. Only valid during the call.
+     * @param channelCount Number of interleaved channels
+     * @param sampleRate Frames per second
+     * @param timestampMs Time the last sample of the block was captured
+     */
+    void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs);
+}
@@ -0,0 +1,101 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * One {@link LatencyHistogram} for each stage a frame goes through on its way to becoming a
+ * command for the stand. Each stage is recorded on a single thread, and the histograms can be
+ * read or dumped from any other.
+ */
+public class PipelineLatency {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public enum Stage {
+        // Time spent in the face detector for one frame
+        DETECTION,
+        // Time spent handling the detections of one frame: picking the target, steering and
+        // updating the face trackers
+        TRACKING,
+        // Time a command waits in the dispatcher queue before it is written
+        QUEUE_WAIT,
+        // Time it takes to write a command to the connection
+        WRITE
+    }
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[Stage.values().length];
+
+    public PipelineLatency() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a latency measured with {@link System#nanoTime()}. Only call for each stage from
+     * the thread that stage runs on.
+     */
+    public void record(Stage stage, long startNs, long endNs) {
+        mHistograms[stage.ordinal()].record((endNs - startNs) / 1000);
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return mHistograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Appends one line per stage with the count, the main percentiles and the maximum in ms, e.g.
+     * for an on-screen summary.
+     */
+    public void appendSummary(StringBuilder out) {
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            out.append(String.format(Locale.US, "%-10s n=%-6d p50 %6.1f  p99 %6.1f  max %6.1f ms%n",
+                    stage, histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxUs() / 1000.0));
+        }
+    }
+
+    /**
+     * Writes the percentiles of each stage, followed by the counts in every bucket that is not
+     * empty, so the whole distribution can be plotted later.
+     */
+    public void write(Writer out) throws IOException {
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            out.write(String.format(Locale.US, "# %s count %d mean %.3f ms max %.3f ms%n",
+                    stage, histogram.getCount(), histogram.getMeanUs() / 1000.0,
+                    histogram.getMaxUs() / 1000.0));
+            for (double percentile : PERCENTILES) {
+                out.write(String.format(Locale.US, "# %s p%s %.3f ms%n", stage,
+                        formatPercentile(percentile),
+                        histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+        }
+        out.write("stage,bucket_max_us,count\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            for (int i = 0; i < histogram.getBuckets(); i++) {
+                long count = histogram.getBucketCount(i);
+                if (count > 0) {
+                    out.write(stage + "," + LatencyHistogram.getHighestValue(i) + "," + count + "\n");
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile)
+                ? Integer.toString((int) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,127 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Steers the stand with timed pulses sized by a PI controller on how far the face is from the
+ * center of the screen, instead of moving until the face is back in the center.<p>
+ *
+ * The error is the position of the face relative to the center, scaled so the edges of the screen
+ * are -1 and 1. While the face is outside the center oval, a pulse is sent on the axis that is
+ * furthest off, lasting {@code kp * error + ki * integral(error)} ms. The stand stops by itself
+ * at the end of a pulse, and no new pulse is sent until it has finished and the camera has had
+ * time to catch up, so pulses are never queued up behind each other on the stand.
+ */
+public class ProportionalSteeringPolicy implements SteeringPolicy {
+    // Pan covers about a third of its range in the 1500ms test moves, tilt is a lot slower
+    public static final float DEFAULT_KP_X = 500f;
+    public static final float DEFAULT_KP_Y = 1400f;
+    public static final float DEFAULT_KI_X = 150f;
+    public static final float DEFAULT_KI_Y = 400f;
+    public static final int DEFAULT_MIN_PULSE_MS = 40;
+    public static final int DEFAULT_MAX_PULSE_MS = 1500;
+    public static final int DEFAULT_SETTLE_MS = 200;
+
+    // Frames further apart than this are treated as a new start for the integral
+    private static final long MAX_FRAME_GAP_MS = 500;
+
+    private float mKpX = DEFAULT_KP_X;
+    private float mKpY = DEFAULT_KP_Y;
+    private float mKiX = DEFAULT_KI_X;
+    private float mKiY = DEFAULT_KI_Y;
+    private int mMinPulseMs = DEFAULT_MIN_PULSE_MS;
+    private int mMaxPulseMs = DEFAULT_MAX_PULSE_MS;
+    private int mSettleMs = DEFAULT_SETTLE_MS;
+
+    private float mIntegralX;
+    private float mIntegralY;
+    private long mLastTimestampMs = -1;
+    private long mNextPulseMs = Long.MIN_VALUE;
+
+    /**
+     * @param kpX Pan pulse length in ms for a face at the edge of the screen
+     * @param kpY Tilt pulse length in ms for a face at the edge of the screen
+     * @param kiX Added pan pulse length in ms per second the face spends at the edge
+     * @param kiY Added tilt pulse length in ms per second the face spends at the edge
+     */
+    public void setGains(float kpX, float kpY, float kiX, float kiY) {
+        mKpX = kpX;
+        mKpY = kpY;
+        mKiX = kiX;
+        mKiY = kiY;
+    }
+
+    /**
+     * Shorter pulses are stretched to the minimum since the stand barely moves for them, longer
+     * ones are cut to the maximum.
+     */
+    public void setPulseLimits(int minPulseMs, int maxPulseMs) {
+        mMinPulseMs = minPulseMs;
+        mMaxPulseMs = maxPulseMs;
+    }
+
+    /**
+     * @param settleMs How long to wait after a pulse ends before sending the next one
+     */
+    public void setSettleTime(int settleMs) {
+        mSettleMs = settleMs;
+    }
+
+    @Override
+    public void steer(SteeringTarget target, CommandSink sink) {
+        long now = target.getTimestampMs();
+        long elapsedMs = mLastTimestampMs < 0 ? 0 : now - mLastTimestampMs;
+        mLastTimestampMs = now;
+
+        if (target.getRegion() == FaceRegion.CENTER) {
+            mIntegralX = 0;
+            mIntegralY = 0;
+            return;
+        }
+
+        float halfWidth = target.getViewWidth() / 2f;
+        float halfHeight = target.getViewHeight() / 2f;
+        float errorX = (target.getX() - halfWidth) / halfWidth;
+        float errorY = (target.getY() - halfHeight) / halfHeight;
+
+        if (elapsedMs > 0 && elapsedMs < MAX_FRAME_GAP_MS) {
+            float dt = elapsedMs / 1000f;
+            // Clamped so a face that was off center for a long time doesn't wind up the integral
+            mIntegralX = clamp(mIntegralX + errorX * dt, -1f, 1f);
+            mIntegralY = clamp(mIntegralY + errorY * dt, -1f, 1f);
+        }
+
+        if (now < mNextPulseMs) {
+            return;
+        }
+
+        float outputX = mKpX * errorX + mKiX * mIntegralX;
+        float outputY = mKpY * errorY + mKiY * mIntegralY;
+
+        // The stand moves one axis at a time, so correct the one that is furthest off
+        Command command;
+        float output;
+        if (Math.abs(errorX) >= Math.abs(errorY)) {
+            // The preview is mirrored, so a face on the right needs the stand to turn left
+            command = outputX > 0 ? Command.LEFT : Command.RIGHT;
+            output = outputX;
+        } else {
+            command = outputY > 0 ? Command.DOWN : Command.UP;
+            output = outputY;
+        }
+
+        int durationMs = (int) clamp(Math.abs(output), mMinPulseMs, mMaxPulseMs);
+        sink.send(command, durationMs);
+        mNextPulseMs = now + durationMs + mSettleMs;
+    }
+
+    @Override
+    public void reset() {
+        mIntegralX = 0;
+        mIntegralY = 0;
+        mLastTimestampMs = -1;
+        mNextPulseMs = Long.MIN_VALUE;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
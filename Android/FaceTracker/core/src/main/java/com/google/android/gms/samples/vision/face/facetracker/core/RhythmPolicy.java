@@ -0,0 +1,104 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+
+/**
+ * The "rhythm" mode: moves the stand, or flashes its LED, along with the beat of the music. Runs on
+ * the capture thread after a {@link BeatTracker}, and sends each command early by the time it takes
+ * to reach the stand, so that it happens on the predicted beat rather than after it.<p>
+ *
+ * With {@link Style#LIGHTS} the LED goes on at each beat and off half a beat later. With
+ * {@link Style#SWAY} the stand pans a little to alternate sides on each beat, but only while no
+ * face is tracked, since face steering comes first.
+ */
+public class RhythmPolicy implements PcmBlockListener {
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.3f;
+    // Bluetooth plus the Pi, see StandSimulator.DEFAULT_LINK_LATENCY_MS
+    public static final int DEFAULT_LEAD_MS = 40;
+    // Longest sway move, as a fraction of the beat period
+    private static final float SWAY_FRACTION = 0.4f;
+    private static final int MAX_SWAY_MS = 300;
+
+    public enum Style {
+        LIGHTS,
+        SWAY
+    }
+
+    private final BeatTracker mTracker;
+    private final CommandSink mSink;
+    private final Style mStyle;
+
+    private float mMinConfidence = DEFAULT_MIN_CONFIDENCE;
+    private int mLeadMs = DEFAULT_LEAD_MS;
+
+    private volatile boolean mFaceTracked;
+
+    // Only touched on the capture thread
+    private long mLastBeatMs = -1;
+    private long mLedOffMs = -1;
+    private boolean mSwayRight;
+    private int mBeats;
+
+    public RhythmPolicy(BeatTracker tracker, CommandSink sink, Style style) {
+        mTracker = tracker;
+        mSink = sink;
+        mStyle = style;
+    }
+
+    /**
+     * @param minConfidence Only follow the beat when the tracker is at least this sure of it
+     * @param leadMs How long before a beat to send its command
+     */
+    public void setParameters(float minConfidence, int leadMs) {
+        mMinConfidence = minConfidence;
+        mLeadMs = leadMs;
+    }
+
+    /**
+     * Called by the face trackers, from any thread, whenever a face appears or the last face
+     * disappears.
+     */
+    public void setFaceTracked(boolean tracked) {
+        mFaceTracked = tracked;
+    }
+
+    @Override
+    public void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs) {
+        int blockMs = samples.remaining() / channelCount * 1000 / sampleRate;
+        mTracker.onBlock(samples, channelCount, sampleRate, timestampMs);
+
+        // Anything due before the next block is sent now
+        long horizonMs = timestampMs + blockMs;
+        if (mLedOffMs >= 0 && mLedOffMs - mLeadMs < horizonMs) {
+            mSink.send(Command.LED_OFF, CommandSink.CONTINUOUS);
+            mLedOffMs = -1;
+        }
+        if (mTracker.getConfidence() < mMinConfidence) {
+            return;
+        }
+        float periodMs = mTracker.getPeriodMs();
+        long beatMs = mTracker.getNextBeatMs(timestampMs + mLeadMs);
+        if (beatMs < 0 || beatMs - mLeadMs >= horizonMs
+                || (mLastBeatMs >= 0 && beatMs - mLastBeatMs < periodMs / 2)) {
+            return;
+        }
+        mLastBeatMs = beatMs;
+        mBeats++;
+
+        if (mStyle == Style.LIGHTS) {
+            mSink.send(Command.LED_ON, CommandSink.CONTINUOUS);
+            mLedOffMs = beatMs + (long) (periodMs / 2);
+        } else if (!mFaceTracked) {
+            int durationMs = Math.min(MAX_SWAY_MS, (int) (periodMs * SWAY_FRACTION));
+            mSink.send(mSwayRight ? Command.RIGHT : Command.LEFT, durationMs);
+            mSwayRight = !mSwayRight;
+        }
+    }
+
+    /**
+     * @return Number of beats acted on since the start
+     */
+    public int getBeatCount() {
+        return mBeats;
+    }
+}
@@ -0,0 +1,49 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Starts moving the stand once the face reaches the outer ring, and stops it once the face is back
+ * in the center.
+ */
+public class RingSteeringPolicy implements SteeringPolicy {
+    private boolean mMovingToCenter = false;
+
+    @Override
+    public void steer(SteeringTarget target, CommandSink sink) {
+        FaceRegion region = target.getRegion();
+        if (mMovingToCenter) {
+            if (region == FaceRegion.CENTER) {
+                mMovingToCenter = false;
+                sink.send(Command.STOP, CommandSink.CONTINUOUS);
+            }
+        } else if (region.getRing() == 2) {
+            mMovingToCenter = true;
+            // The preview is mirrored, so left and right are swapped
+            switch (region.getSide()) {
+                case UP:
+                    sink.send(Command.UP, CommandSink.CONTINUOUS);
+                    break;
+                case DOWN:
+                    sink.send(Command.DOWN, CommandSink.CONTINUOUS);
+                    break;
+                case LEFT:
+                    sink.send(Command.RIGHT, CommandSink.CONTINUOUS);
+                    break;
+                case RIGHT:
+                    sink.send(Command.LEFT, CommandSink.CONTINUOUS);
+                    break;
+                default:
+                    mMovingToCenter = false;
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        mMovingToCenter = false;
+    }
+
+    public boolean isMovingToCenter() {
+        return mMovingToCenter;
+    }
+}
@@ -0,0 +1,251 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back a recording made with {@link SessionRecorder}, one record at a time. After
+ * {@link #next()} the getters describe the current record; the ones that do not apply to its type
+ * return 0. Not thread safe.
+ */
+public class SessionReader implements Closeable {
+    private static final int BUFFER_RECORDS = 256;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer =
+            ByteBuffer.allocateDirect(SessionRecorder.RECORD_SIZE * BUFFER_RECORDS);
+    private final long mStartWallClockMs;
+
+    private int mType;
+    private int mFlags;
+    private int mValue;
+    private long mTimeMs;
+    private long mFrameValue;
+    // Bytes 24-59 of the record, to be read as ints or floats depending on the type
+    private final int[] mPayload = new int[9];
+
+    /**
+     * Opens the recording and checks its header.
+     *
+     * @throws IOException If the file can't be read or is not a recording this reader understands
+     */
+    public SessionReader(File file) throws IOException {
+        mChannel = new FileInputStream(file).getChannel();
+        mBuffer.limit(0);
+        try {
+            if (!fill()) {
+                throw new IOException(file + " is empty");
+            }
+            int magic = mBuffer.getInt();
+            int version = mBuffer.getShort();
+            int recordSize = mBuffer.getShort();
+            if (magic != SessionRecorder.MAGIC || version != SessionRecorder.VERSION
+                    || recordSize != SessionRecorder.RECORD_SIZE) {
+                throw new IOException(file + " is not a version " + SessionRecorder.VERSION
+                        + " session recording");
+            }
+            mStartWallClockMs = mBuffer.getLong();
+            skipToNextRecord();
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Wall clock time the recording started, in ms since the epoch
+     */
+    public long getStartWallClockMs() {
+        return mStartWallClockMs;
+    }
+
+    /**
+     * Moves on to the next record.
+     *
+     * @return False at the end of the recording. A record cut short by the app being killed
+     * counts as the end.
+     */
+    public boolean next() throws IOException {
+        if (!fill()) {
+            return false;
+        }
+        mType = mBuffer.get();
+        mFlags = mBuffer.get();
+        mBuffer.getShort();
+        mValue = mBuffer.getInt();
+        mTimeMs = mBuffer.getLong();
+        mFrameValue = mBuffer.getLong();
+        for (int i = 0; i < mPayload.length; i++) {
+            mPayload[i] = mBuffer.getInt();
+        }
+        skipToNextRecord();
+        return true;
+    }
+
+    /**
+     * @return {@link SessionRecorder#FRAME}, {@link SessionRecorder#FACE} or
+     * {@link SessionRecorder#COMMAND}
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * @return Time of the record in ms since the recording started
+     */
+    public long getTimeMs() {
+        return mTimeMs;
+    }
+
+    /**
+     * @return For a frame, the number of face records that follow it
+     */
+    public int getFaceCount() {
+        return mType == SessionRecorder.FRAME ? mValue : 0;
+    }
+
+    /**
+     * @return For a frame, the overlay width to steer on
+     */
+    public int getSizeX() {
+        return mType == SessionRecorder.FRAME ? mPayload[0] : 0;
+    }
+
+    /**
+     * @return For a frame, the overlay height to steer on
+     */
+    public int getSizeY() {
+        return mType == SessionRecorder.FRAME ? mPayload[1] : 0;
+    }
+
+    public float getScaleX() {
+        return mType == SessionRecorder.FRAME ? getFloat(2) : 0;
+    }
+
+    public float getScaleY() {
+        return mType == SessionRecorder.FRAME ? getFloat(3) : 0;
+    }
+
+    /**
+     * @return For a frame, whether the preview was mirrored
+     */
+    public boolean isMirrored() {
+        return mType == SessionRecorder.FRAME && (mFlags & SessionRecorder.FLAG_MIRRORED) != 0;
+    }
+
+    /**
+     * @param last Transform of an earlier frame, or null
+     * @return For a frame, the mapping from the preview to the overlay: last if it maps the same
+     * way, otherwise a new one
+     */
+    public ViewTransform getTransform(ViewTransform last) {
+        if (last != null && last.matches(getSizeX(), getSizeY(), getScaleX(), getScaleY(),
+                isMirrored())) {
+            return last;
+        }
+        return new ViewTransform(getSizeX(), getSizeY(), getScaleX(), getScaleY(), isMirrored());
+    }
+
+    /**
+     * @return For a frame or face, the capture time of the frame
+     */
+    public long getFrameTimestampMs() {
+        return mType == SessionRecorder.COMMAND ? 0 : mFrameValue;
+    }
+
+    /**
+     * Copies the current face record into a reusable observation.
+     *
+     * @return The filled in observation
+     */
+    public FaceObservation getFace(FaceObservation out) {
+        out.set(mValue, mFrameValue, getFloat(0), getFloat(1), getFloat(2), getFloat(3));
+        return out;
+    }
+
+    /**
+     * @return For a face, whether the stand was steered towards it
+     */
+    public boolean isTarget() {
+        return mType == SessionRecorder.FACE && (mFlags & SessionRecorder.FLAG_TARGET) != 0;
+    }
+
+    public float getEulerY() {
+        return mType == SessionRecorder.FACE ? getFloat(4) : 0;
+    }
+
+    public float getEulerZ() {
+        return mType == SessionRecorder.FACE ? getFloat(5) : 0;
+    }
+
+    public float getLeftEyeOpenProbability() {
+        return mType == SessionRecorder.FACE ? getFloat(6) : 0;
+    }
+
+    public float getRightEyeOpenProbability() {
+        return mType == SessionRecorder.FACE ? getFloat(7) : 0;
+    }
+
+    public float getSmilingProbability() {
+        return mType == SessionRecorder.FACE ? getFloat(8) : 0;
+    }
+
+    /**
+     * @return For a command, the command, or null if the opcode is unknown
+     */
+    public Command getCommand() {
+        return mType == SessionRecorder.COMMAND ? Command.fromOpcode(mValue) : null;
+    }
+
+    /**
+     * @return For a command, how long to move for
+     */
+    public int getDurationMs() {
+        return mType == SessionRecorder.COMMAND ? (int) mFrameValue : 0;
+    }
+
+    /**
+     * @return For a command, what sent it, e.g. {@link SessionRecorder#SOURCE_STEERING}
+     */
+    public int getSource() {
+        return mType == SessionRecorder.COMMAND ? mFlags : SessionRecorder.SOURCE_UNKNOWN;
+    }
+
+    private float getFloat(int index) {
+        return Float.intBitsToFloat(mPayload[index]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    /**
+     * Makes sure a whole record is buffered.
+     *
+     * @return False if the file ends first
+     */
+    private boolean fill() throws IOException {
+        if (mBuffer.remaining() >= SessionRecorder.RECORD_SIZE) {
+            return true;
+        }
+        mBuffer.compact();
+        while (mBuffer.position() < SessionRecorder.RECORD_SIZE) {
+            if (mChannel.read(mBuffer) < 0) {
+                break;
+            }
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= SessionRecorder.RECORD_SIZE;
+    }
+
+    private void skipToNextRecord() {
+        int end = (mBuffer.position() + SessionRecorder.RECORD_SIZE - 1)
+                / SessionRecorder.RECORD_SIZE * SessionRecorder.RECORD_SIZE;
+        mBuffer.position(end);
+    }
+}
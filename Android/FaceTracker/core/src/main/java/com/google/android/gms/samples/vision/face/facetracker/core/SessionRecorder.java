@@ -0,0 +1,229 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records what the detector saw and what was sent to the stand to a binary file, for replaying
+ * through the steering code later with a {@link SessionReader}. Every record is
+ * {@link #RECORD_SIZE} bytes, big endian, and starts with its type and its time in ms since the
+ * recording started:
+ * <pre>
+ * byte 0       type: {@link #FRAME}, {@link #FACE} or {@link #COMMAND}
+ * byte 1       flags, {@link #FLAG_TARGET} on the face the stand was steered towards,
+ *              {@link #FLAG_MIRRORED} on a frame from a mirrored preview, and for a command
+ *              which part of the app sent it, e.g. {@link #SOURCE_STEERING}
+ * bytes 2-3    reserved, 0
+ * bytes 4-7    frame: number of face records that follow, face: ID, command: opcode
+ * bytes 8-15   time in ms since the recording started
+ * bytes 16-23  frame and face: capture time of the frame in ms, command: duration in ms
+ * bytes 24-39  frame: overlay width and height, then scale x and y as floats
+ * bytes 24-59  face: x, y, width, height, Euler y and z, left and right eye open and smiling
+ *              probabilities, all floats
+ * </pre>
+ * The file starts with a header of the same size: {@link #MAGIC}, the version as a short, the
+ * record size as a short, and the wall clock time the recording started in ms.<p>
+ *
+ * Records are put in a direct buffer and written to the file channel whenever it fills up, so
+ * recording a frame only copies a few hundred bytes. If a write fails, recording stops and the
+ * error is kept for {@link #getError()}, so the detector and audio threads never see it. Thread
+ * safe.
+ */
+public class SessionRecorder implements Closeable {
+    public static final int MAGIC = 0x4654524B; // "FTRK"
+    public static final int VERSION = 1;
+    public static final int RECORD_SIZE = 64;
+
+    public static final int FRAME = 1;
+    public static final int FACE = 2;
+    public static final int COMMAND = 3;
+    public static final int FLAG_TARGET = 1;
+    public static final int FLAG_MIRRORED = 2;
+
+    // What sent a command, in the flags of its record
+    public static final int SOURCE_UNKNOWN = 0;
+    public static final int SOURCE_STEERING = 1;
+    public static final int SOURCE_SOUND = 2;
+    public static final int SOURCE_RHYTHM = 3;
+
+    private static final int BUFFER_RECORDS = 256;
+
+    private final FileChannel mChannel;
+    private final Clock mClock;
+    private final long mStartMs;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(RECORD_SIZE * BUFFER_RECORDS);
+    private long mRecordCount;
+    private boolean mClosed;
+    private IOException mError;
+
+    public SessionRecorder(File file) throws IOException {
+        this(file, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates the file, replacing any file already there, and writes the header.
+     *
+     * @param clock Source of the record times, the same the {@link CommandGovernor} uses
+     */
+    public SessionRecorder(File file, Clock clock) throws IOException {
+        mChannel = new FileOutputStream(file).getChannel();
+        mClock = clock;
+        mStartMs = clock.getTimeMs();
+        mBuffer.putInt(MAGIC);
+        mBuffer.putShort((short) VERSION);
+        mBuffer.putShort((short) RECORD_SIZE);
+        mBuffer.putLong(System.currentTimeMillis());
+        endRecord();
+    }
+
+    /**
+     * Records the start of a frame. The faces detected in it follow with {@link #recordFace}.
+     *
+     * @param timestampMs Capture time of the frame
+     * @param faceCount Number of faces that will be recorded for this frame
+     * @param view Mapping from the preview to the overlay the faces are steered on
+     */
+    public synchronized void recordFrame(long timestampMs, int faceCount, ViewTransform view) {
+        if (!startRecord(FRAME, view.isMirrored() ? FLAG_MIRRORED : 0, faceCount)) {
+            return;
+        }
+        mBuffer.putLong(timestampMs);
+        mBuffer.putInt(view.getViewWidth());
+        mBuffer.putInt(view.getViewHeight());
+        mBuffer.putFloat(view.getScaleX());
+        mBuffer.putFloat(view.getScaleY());
+        endRecord();
+    }
+
+    /**
+     * Records one face of the current frame, with the angles and probabilities the detector
+     * reported for it.
+     *
+     * @param target Whether this is the face the stand was steered towards
+     */
+    public synchronized void recordFace(FaceObservation face, boolean target, float eulerY,
+                                        float eulerZ, float leftEyeOpen, float rightEyeOpen,
+                                        float smiling) {
+        if (!startRecord(FACE, target ? FLAG_TARGET : 0, face.getId())) {
+            return;
+        }
+        mBuffer.putLong(face.getTimestampMs());
+        mBuffer.putFloat(face.getX());
+        mBuffer.putFloat(face.getY());
+        mBuffer.putFloat(face.getWidth());
+        mBuffer.putFloat(face.getHeight());
+        mBuffer.putFloat(eulerY);
+        mBuffer.putFloat(eulerZ);
+        mBuffer.putFloat(leftEyeOpen);
+        mBuffer.putFloat(rightEyeOpen);
+        mBuffer.putFloat(smiling);
+        endRecord();
+    }
+
+    /**
+     * Records a command on its way to the stand.
+     *
+     * @param source What sent the command, e.g. {@link #SOURCE_STEERING}
+     */
+    public synchronized void recordCommand(Command command, int durationMs, int source) {
+        if (!startRecord(COMMAND, source, command.getOpcode())) {
+            return;
+        }
+        mBuffer.putLong(durationMs);
+        endRecord();
+    }
+
+    /**
+     * @return Number of records so far, not counting the header
+     */
+    public synchronized long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * @return The write error that stopped the recording, or null if there was none
+     */
+    public synchronized IOException getError() {
+        return mError;
+    }
+
+    /**
+     * Writes out the records that are still buffered.
+     */
+    public synchronized void flush() throws IOException {
+        if (mError != null) {
+            throw mError;
+        }
+        if (mClosed) {
+            return;
+        }
+        mBuffer.flip();
+        try {
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+        } catch (IOException e) {
+            mError = e;
+            throw e;
+        } finally {
+            mBuffer.clear();
+        }
+    }
+
+    /**
+     * Writes out the buffered records and closes the file. Does nothing if already closed.
+     *
+     * @throws IOException If this or an earlier write failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            mClosed = true;
+            mChannel.close();
+        }
+    }
+
+    /**
+     * Writes the common start of a record, flushing first if the buffer is full.
+     *
+     * @return False if the recording is closed or stopped by an error
+     */
+    private boolean startRecord(int type, int flags, int value) {
+        if (mClosed || mError != null) {
+            return false;
+        }
+        if (!mBuffer.hasRemaining()) {
+            try {
+                flush();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        mBuffer.put((byte) type);
+        mBuffer.put((byte) flags);
+        mBuffer.putShort((short) 0);
+        mBuffer.putInt(value);
+        mBuffer.putLong(mClock.getTimeMs() - mStartMs);
+        mRecordCount++;
+        return true;
+    }
+
+    /**
+     * Pads the current record to its full size.
+     */
+    private void endRecord() {
+        int end = (mBuffer.position() + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+        while (mBuffer.position() < end) {
+            mBuffer.put((byte) 0);
+        }
+    }
+}
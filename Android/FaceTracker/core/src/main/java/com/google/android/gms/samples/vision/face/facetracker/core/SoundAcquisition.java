@@ -0,0 +1,112 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Turns the stand towards sounds while no face is in view, so that a person who is talking or
+ * playing off to the side gets into the picture, and face steering can take over from there.<p>
+ *
+ * Fed with stereo audio on the capture thread, where it runs a {@link SoundBearingEstimator} and,
+ * once no face has been tracked for a while, sends timed pan moves towards the sound. Each move is
+ * longer the further to the side the sound is, and the next one is only sent once the stand has
+ * had time to stop. The face trackers report whether they see a face with
+ * {@link #setFaceTracked(boolean)}; while they do, nothing is sent.
+ */
+public class SoundAcquisition implements PcmBlockListener {
+    public static final float DEFAULT_DEADBAND = 0.15f;
+    public static final int DEFAULT_MIN_PULSE_MS = 100;
+    public static final int DEFAULT_MAX_PULSE_MS = 700;
+    public static final int DEFAULT_SETTLE_MS = 400;
+    // Faces often go missing for a few frames, so wait before acting on it
+    public static final int DEFAULT_FACE_LOST_DELAY_MS = 1000;
+    // Only act on sounds heard this recently
+    public static final int DEFAULT_MAX_BEARING_AGE_MS = 300;
+
+    private final SoundBearingEstimator mEstimator;
+    private final CommandSink mSink;
+
+    private float mDeadband = DEFAULT_DEADBAND;
+    private int mMinPulseMs = DEFAULT_MIN_PULSE_MS;
+    private int mMaxPulseMs = DEFAULT_MAX_PULSE_MS;
+    private int mSettleMs = DEFAULT_SETTLE_MS;
+    private int mFaceLostDelayMs = DEFAULT_FACE_LOST_DELAY_MS;
+    private int mMaxBearingAgeMs = DEFAULT_MAX_BEARING_AGE_MS;
+
+    private volatile boolean mFaceTracked;
+
+    // Only touched on the capture thread
+    private boolean mWasFaceTracked = true;
+    private long mFaceLostMs;
+    private long mNextPulseMs;
+    private int mPulses;
+
+    public SoundAcquisition(SoundBearingEstimator estimator, CommandSink sink) {
+        mEstimator = estimator;
+        mSink = sink;
+    }
+
+    /**
+     * @param deadband Bearings closer to 0 than this are treated as straight ahead
+     * @param minPulseMs Length of the move for a bearing just outside the deadband
+     * @param maxPulseMs Length of the move for a sound entirely on one side
+     */
+    public void setPulses(float deadband, int minPulseMs, int maxPulseMs) {
+        mDeadband = deadband;
+        mMinPulseMs = minPulseMs;
+        mMaxPulseMs = maxPulseMs;
+    }
+
+    /**
+     * @param settleMs Time to wait after a move ends before hearing where the sound is again
+     * @param faceLostDelayMs Time without a face before turning towards sounds
+     */
+    public void setTiming(int settleMs, int faceLostDelayMs) {
+        mSettleMs = settleMs;
+        mFaceLostDelayMs = faceLostDelayMs;
+    }
+
+    /**
+     * Called by the face trackers, from any thread, whenever a face appears or the last face
+     * disappears.
+     */
+    public void setFaceTracked(boolean tracked) {
+        mFaceTracked = tracked;
+    }
+
+    @Override
+    public void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs) {
+        mEstimator.onBlock(samples, channelCount, sampleRate, timestampMs);
+
+        boolean faceTracked = mFaceTracked;
+        if (faceTracked || mWasFaceTracked) {
+            if (!faceTracked) {
+                mFaceLostMs = timestampMs;
+            }
+            mWasFaceTracked = faceTracked;
+            return;
+        }
+        long heardMs = mEstimator.getBearingTimestampMs();
+        if (timestampMs - mFaceLostMs < mFaceLostDelayMs || timestampMs < mNextPulseMs
+                || heardMs == Long.MIN_VALUE || timestampMs - heardMs > mMaxBearingAgeMs) {
+            return;
+        }
+
+        float bearing = mEstimator.getBearing();
+        float magnitude = Math.abs(bearing);
+        if (magnitude < mDeadband) {
+            return;
+        }
+        int durationMs = mMinPulseMs + (int) ((mMaxPulseMs - mMinPulseMs)
+                * Math.min(1f, (magnitude - mDeadband) / (1f - mDeadband)));
+        mSink.send(bearing > 0 ? Command.RIGHT : Command.LEFT, durationMs);
+        mNextPulseMs = timestampMs + durationMs + mSettleMs;
+        mPulses++;
+    }
+
+    /**
+     * @return Number of moves sent since the start
+     */
+    public int getPulseCount() {
+        return mPulses;
+    }
+}
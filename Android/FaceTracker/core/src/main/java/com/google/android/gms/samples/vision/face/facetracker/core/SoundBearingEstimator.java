@@ -0,0 +1,114 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Estimates which side of the stand a sound is coming from, from the difference in level between
+ * the two channels of stereo audio. The bearing goes from -1 (only heard on the side a "left"
+ * command turns towards) to 1 (only heard on the "right" side); it says which way to turn, not an
+ * angle.<p>
+ *
+ * Only sounds clearly above the background noise count. The background level is tracked by
+ * following quiet blocks quickly and loud blocks slowly. Which channel faces which way depends on
+ * the phone and how it sits on the stand, see {@link #setSwapChannels(boolean)}.<p>
+ *
+ * Blocks are fed in on the capture thread. The latest bearing can be read from any thread.
+ */
+public class SoundBearingEstimator implements PcmBlockListener {
+    public static final float DEFAULT_MIN_SNR = 4f;
+    public static final float DEFAULT_SMOOTHING = 0.3f;
+    // How fast the noise floor rises towards louder blocks, per block
+    private static final float FLOOR_RISE = 0.002f;
+    // Keeps the noise floor above 0 in digital silence
+    private static final float MIN_FLOOR = 1e-8f;
+
+    private float mMinSnr = DEFAULT_MIN_SNR;
+    private float mSmoothing = DEFAULT_SMOOTHING;
+    private boolean mSwapChannels;
+
+    // Only touched on the capture thread
+    private float mLeftEnergy;
+    private float mRightEnergy;
+    private float mNoiseFloor = -1;
+
+    private volatile float mBearing;
+    private volatile long mBearingTimestampMs = Long.MIN_VALUE;
+
+    /**
+     * @param minSnr How many times the background energy a block needs to give a bearing
+     * @param smoothing How much of each block's channel energies is mixed into the running ones,
+     *                  between 0 and 1
+     */
+    public void setParameters(float minSnr, float smoothing) {
+        mMinSnr = minSnr;
+        mSmoothing = smoothing;
+    }
+
+    /**
+     * @param swap True if the first channel is on the side a "right" command turns towards
+     */
+    public void setSwapChannels(boolean swap) {
+        mSwapChannels = swap;
+    }
+
+    @Override
+    public void onBlock(ShortBuffer samples, int channelCount, int sampleRate, long timestampMs) {
+        if (channelCount < 2) {
+            return;
+        }
+        int start = samples.position();
+        int frames = samples.remaining() / channelCount;
+        if (frames == 0) {
+            return;
+        }
+        long first = 0;
+        long second = 0;
+        for (int i = 0, index = start; i < frames; i++, index += channelCount) {
+            int a = samples.get(index);
+            int b = samples.get(index + 1);
+            first += a * a;
+            second += b * b;
+        }
+        float scale = 1f / frames / (32768f * 32768f);
+        float left = (mSwapChannels ? second : first) * scale;
+        float right = (mSwapChannels ? first : second) * scale;
+
+        mLeftEnergy += mSmoothing * (left - mLeftEnergy);
+        mRightEnergy += mSmoothing * (right - mRightEnergy);
+
+        float total = left + right;
+        if (mNoiseFloor < 0 || total < mNoiseFloor) {
+            mNoiseFloor = Math.max(total, MIN_FLOOR);
+        } else {
+            mNoiseFloor += FLOOR_RISE * (total - mNoiseFloor);
+        }
+
+        float smoothedTotal = mLeftEnergy + mRightEnergy;
+        if (total > mMinSnr * mNoiseFloor && smoothedTotal > 0) {
+            mBearing = (mRightEnergy - mLeftEnergy) / smoothedTotal;
+            mBearingTimestampMs = timestampMs;
+        }
+    }
+
+    /**
+     * @return Direction of the last sound loud enough to tell, from -1 (turn left) to 1 (turn
+     * right)
+     */
+    public float getBearing() {
+        return mBearing;
+    }
+
+    /**
+     * @return When the last sound loud enough to tell ended, or Long.MIN_VALUE if there was none
+     */
+    public long getBearingTimestampMs() {
+        return mBearingTimestampMs;
+    }
+
+    public void reset() {
+        mLeftEnergy = 0;
+        mRightEnergy = 0;
+        mNoiseFloor = -1;
+        mBearingTimestampMs = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,17 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Decides which commands to send to the stand as the face moves around the screen.
+ */
+public interface SteeringPolicy {
+
+    /**
+     * Called every time the face is detected.
+     */
+    void steer(SteeringTarget target, CommandSink sink);
+
+    /**
+     * Forgets any movement in progress, e.g. after the connection to the stand was reset.
+     */
+    void reset();
+}
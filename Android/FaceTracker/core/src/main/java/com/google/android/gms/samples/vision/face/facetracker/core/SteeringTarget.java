@@ -0,0 +1,55 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Where the face being steered towards is on the overlay. Reused from frame to frame.
+ */
+public class SteeringTarget {
+    private int mFaceId;
+    private long mTimestampMs;
+    private FaceRegion mRegion = FaceRegion.CENTER;
+    private float mX;
+    private float mY;
+    private int mViewWidth;
+    private int mViewHeight;
+
+    public void set(int faceId, long timestampMs, FaceRegion region, float x, float y, int viewWidth, int viewHeight) {
+        mFaceId = faceId;
+        mTimestampMs = timestampMs;
+        mRegion = region;
+        mX = x;
+        mY = y;
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+    }
+
+    public int getFaceId() {
+        return mFaceId;
+    }
+
+    /**
+     * @return Time the camera frame the face was detected in was captured
+     */
+    public long getTimestampMs() {
+        return mTimestampMs;
+    }
+
+    public FaceRegion getRegion() {
+        return mRegion;
+    }
+
+    public float getX() {
+        return mX;
+    }
+
+    public float getY() {
+        return mY;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+}
@@ -0,0 +1,132 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes timestamped command frames over a {@link CommandTransport}, and reads the server's
+ * acknowledgements back on a thread of its own. Every acknowledgement counts as a sign of life, and
+ * the ones for commands also go into a {@link CommandLatency}.<p>
+ *
+ * Like any {@link CommandWriter}, only used from the {@link CommandDispatcher} writer thread.
+ */
+public class StreamCommandWriter implements CommandWriter {
+    private final CommandTransport mTransport;
+    private final byte[] mFrame = new byte[CommandCodec.TIMED_FRAME_SIZE];
+    private int mSequence;
+    private CommandLatency mLatency;
+    private OutputStream mOutputStream;
+    private volatile long mLastReplyNs;
+
+    public StreamCommandWriter(CommandTransport transport) {
+        mTransport = transport;
+    }
+
+    /**
+     * @param latency Where to add the acknowledgements of commands, or null to only use them as
+     *                signs of life. Set before connecting.
+     */
+    public void setLatency(CommandLatency latency) {
+        mLatency = latency;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (mOutputStream != null && mTransport.isOpen()) {
+            return;
+        }
+        close();
+        mTransport.open();
+        mOutputStream = mTransport.getOutputStream();
+        mLastReplyNs = System.nanoTime();
+        startAckReader(mTransport.getInputStream());
+    }
+
+    @Override
+    public void write(Command command, int durationMs, long timestampUs) throws IOException {
+        if (mOutputStream == null) {
+            throw new IOException("Not connected");
+        }
+        CommandCodec.encodeTimed(command, durationMs, mSequence++, timestampUs, mFrame, 0);
+        mOutputStream.write(mFrame);
+    }
+
+    @Override
+    public void ping(long timestampUs) throws IOException {
+        if (mOutputStream == null) {
+            throw new IOException("Not connected");
+        }
+        CommandCodec.encodePing(mSequence++, timestampUs, mFrame, 0);
+        mOutputStream.write(mFrame);
+    }
+
+    @Override
+    public long getLastReplyNs() {
+        return mLastReplyNs;
+    }
+
+    @Override
+    public void close() {
+        mTransport.close();
+        mOutputStream = null;
+    }
+
+    /**
+     * Reads acknowledgements until the connection is closed.
+     */
+    private void startAckReader(final InputStream stream) {
+        final CommandLatency latency = mLatency;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readAcks(new BufferedInputStream(stream), latency);
+                } catch (IOException e) {
+                    // The connection was closed, the writer notices on its next write
+                }
+            }
+        }, "StandAckReader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readAcks(InputStream stream, CommandLatency latency) throws IOException {
+        byte[] frame = new byte[CommandCodec.ACK_SIZE];
+        CommandAck ack = new CommandAck();
+        while (true) {
+            int b = stream.read();
+            if (b < 0) {
+                return;
+            }
+            if (b != CommandCodec.ACK_SYNC) {
+                // Out of sync, skip ahead to the next sync byte
+                continue;
+            }
+            frame[0] = (byte) b;
+            readFully(stream, frame, 1, frame.length - 1);
+            long ackedNs = System.nanoTime();
+            if (!CommandCodec.decodeAck(frame, 0, ack)) {
+                continue;
+            }
+            mLastReplyNs = ackedNs;
+            if (latency != null && ack.getOpcode() != CommandCodec.PING_OPCODE) {
+                latency.onAck(ack, ackedNs / 1000);
+            }
+        }
+    }
+
+    private static void readFully(InputStream stream, byte[] buffer, int offset, int length)
+            throws IOException {
+        while (length > 0) {
+            int read = stream.read(buffer, offset, length);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Picks the one face to steer towards when there are several in view, so that the stand follows a
+ * single person instead of getting a command for each face in turn.<p>
+ *
+ * The selection is sticky: the current target stays the target for as long as it is in view,
+ * unless another face is clearly better by the chosen {@link Strategy}, so two people of about the
+ * same size or distance from the center do not make the stand flip between them. How long each
+ * face has been tracked is kept in primitive arrays with room for {@link #MAX_FACES} faces, so
+ * selecting never allocates. Not thread safe.
+ */
+public class TargetSelector {
+    public static final int MAX_FACES = 16;
+    // A face has to be this much larger than the target to take over
+    public static final float DEFAULT_SIZE_MARGIN = 0.3f;
+    // A face has to be this much closer to the center than the target, as a fraction of the
+    // frame size, to take over
+    public static final float DEFAULT_CENTER_MARGIN = 0.1f;
+
+    private static final int NO_FACE = -1;
+
+    public enum Strategy {
+        // The face that takes up most of the picture, i.e. usually the closest person
+        LARGEST,
+        // The face nearest the center of the picture
+        CLOSEST_TO_CENTER,
+        // The face that has been in view the longest
+        LONGEST_TRACKED
+    }
+
+    private final Strategy mStrategy;
+    private float mSizeMargin = DEFAULT_SIZE_MARGIN;
+    private float mCenterMargin = DEFAULT_CENTER_MARGIN;
+
+    private int mTargetId = NO_FACE;
+    // When each face was first seen, and last seen so faces that left can be forgotten
+    private final int[] mIds = new int[MAX_FACES];
+    private final long[] mFirstSeenMs = new long[MAX_FACES];
+    private final long[] mLastSeenMs = new long[MAX_FACES];
+
+    public TargetSelector(Strategy strategy) {
+        mStrategy = strategy;
+        reset();
+    }
+
+    public void setMargins(float sizeMargin, float centerMargin) {
+        mSizeMargin = sizeMargin;
+        mCenterMargin = centerMargin;
+    }
+
+    /**
+     * Picks the target among the faces detected in one frame.
+     *
+     * @param faces Faces in the frame, in preview coordinates
+     * @param count Number of faces in the array to look at
+     * @param frameWidth Width of the preview
+     * @param frameHeight Height of the preview
+     * @return Index of the target in faces, or -1 if count is 0
+     */
+    public int select(FaceObservation[] faces, int count, float frameWidth, float frameHeight) {
+        int current = -1;
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            FaceObservation face = faces[i];
+            track(face.getId(), face.getTimestampMs());
+            if (face.getId() == mTargetId) {
+                current = i;
+            }
+            if (best < 0 || isBetter(faces[i], faces[best], 0, frameWidth, frameHeight)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            mTargetId = NO_FACE;
+            return -1;
+        }
+
+        int target = best;
+        if (current >= 0 && current != best
+                && !isBetter(faces[best], faces[current], 1, frameWidth, frameHeight)) {
+            target = current;
+        }
+        mTargetId = faces[target].getId();
+        return target;
+    }
+
+    /**
+     * @return ID of the face picked by the last call to select, or -1 if there was none
+     */
+    public int getTargetId() {
+        return mTargetId;
+    }
+
+    public void reset() {
+        mTargetId = NO_FACE;
+        for (int i = 0; i < MAX_FACES; i++) {
+            mIds[i] = NO_FACE;
+        }
+    }
+
+    /**
+     * @param margin 0 for any improvement, 1 to require the configured margin
+     */
+    private boolean isBetter(FaceObservation a, FaceObservation b, float margin,
+                             float frameWidth, float frameHeight) {
+        switch (mStrategy) {
+            case LARGEST:
+                return a.getWidth() * a.getHeight()
+                        > b.getWidth() * b.getHeight() * (1 + margin * mSizeMargin);
+            case CLOSEST_TO_CENTER:
+                return distanceToCenter(a, frameWidth, frameHeight) + margin * mCenterMargin
+                        < distanceToCenter(b, frameWidth, frameHeight);
+            case LONGEST_TRACKED:
+            default:
+                // Whoever is tracked longest stays so, so there is nothing to be sticky about
+                return firstSeen(a.getId()) < firstSeen(b.getId());
+        }
+    }
+
+    private static float distanceToCenter(FaceObservation face, float frameWidth, float frameHeight) {
+        float dx = face.getCenterX() / frameWidth - 0.5f;
+        float dy = face.getCenterY() / frameHeight - 0.5f;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private long firstSeen(int id) {
+        for (int i = 0; i < MAX_FACES; i++) {
+            if (mIds[i] == id) {
+                return mFirstSeenMs[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void track(int id, long timestampMs) {
+        int slot = NO_FACE;
+        int oldest = 0;
+        for (int i = 0; i < MAX_FACES; i++) {
+            if (mIds[i] == id) {
+                slot = i;
+                break;
+            }
+            if (mIds[oldest] != NO_FACE
+                    && (mIds[i] == NO_FACE || mLastSeenMs[i] < mLastSeenMs[oldest])) {
+                oldest = i;
+            }
+        }
+        if (slot == NO_FACE) {
+            slot = oldest;
+            mIds[slot] = id;
+            mFirstSeenMs[slot] = timestampMs;
+        }
+        mLastSeenMs[slot] = timestampMs;
+    }
+}
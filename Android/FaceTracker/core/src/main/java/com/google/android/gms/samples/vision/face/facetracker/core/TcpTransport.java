@@ -0,0 +1,81 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Sends commands over TCP instead of Bluetooth, e.g. to PhoneServer.py started with {@code --tcp}
+ * on the same Wi-Fi network, or to a stand-in for the server on the same machine.
+ */
+public class TcpTransport implements CommandTransport {
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final String mHost;
+    private final int mPort;
+    private volatile Socket mSocket;
+
+    public TcpTransport(String host, int port) {
+        mHost = host;
+        mPort = port;
+    }
+
+    @Override
+    public void open() throws IOException {
+        Socket socket = new Socket();
+        synchronized (this) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted before connecting");
+            }
+            // Published before connecting, so close() can abort the connect
+            mSocket = socket;
+        }
+        try {
+            // Commands are single small frames that should go out straight away
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(mHost, mPort), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        Socket socket = mSocket;
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return getSocket().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return getSocket().getOutputStream();
+    }
+
+    private Socket getSocket() throws IOException {
+        Socket socket = mSocket;
+        if (socket == null) {
+            throw new IOException("Not connected");
+        }
+        return socket;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+        mSocket = null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest version of some state from one producer thread to one consumer thread without
+ * either of them waiting or allocating. The producer fills in {@link #getBack()} and calls
+ * {@link #publish()}; the consumer calls {@link #getFront()} and gets the most recently published
+ * buffer, which the producer will not touch until the consumer has moved on to a newer one.
+ * Versions published in between are skipped.<p>
+ *
+ * The three buffers are allocated up front by the caller, so they can be plain mutable objects.
+ */
+public class TripleBuffer<T> {
+    // Set on the middle index when it holds a version the consumer has not seen yet
+    private static final int FRESH = 4;
+
+    private final Object[] mBuffers;
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    // Only touched by the producer
+    private int mBack = 0;
+    // Only touched by the consumer
+    private int mFront = 2;
+
+    public TripleBuffer(T first, T second, T third) {
+        mBuffers = new Object[] {first, second, third};
+    }
+
+    /**
+     * @return The buffer for the producer to fill in. Only call from the producer thread.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mBuffers[mBack];
+    }
+
+    /**
+     * Makes the back buffer the latest version. Only call from the producer thread; the back buffer
+     * is a different one afterwards.
+     */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & ~FRESH;
+    }
+
+    /**
+     * @return The latest published buffer, or the same buffer as last time if nothing has been
+     * published since. Only call from the consumer thread.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        if ((mMiddle.get() & FRESH) != 0) {
+            mFront = mMiddle.getAndSet(mFront) & ~FRESH;
+        }
+        return (T) mBuffers[mFront];
+    }
+}
@@ -0,0 +1,122 @@
+package com.google.android.gms.samples.vision.face.facetracker.core;
+
+/**
+ * Maps positions and sizes from the preview the detector works on to the overlay the user sees:
+ * scaled up to the overlay, and mirrored for the front camera. The detector hands out upright
+ * coordinates, so the rotation of the preview only decides which of its sides is the width. The
+ * scale, mirroring and offset are folded into one multiply-add per axis when the transform is
+ * built.<p>
+ *
+ * Immutable, so the detector and UI threads can share one without locking. The overlay builds a
+ * new one whenever its size or the camera changes and publishes it through a volatile field.
+ */
+public class ViewTransform {
+    private final int mViewWidth;
+    private final int mViewHeight;
+    private final float mScaleX;
+    private final float mScaleY;
+    private final boolean mMirrored;
+    // x on the overlay is mFactorX * x + mOffsetX, y is mScaleY * y
+    private final float mFactorX;
+    private final float mOffsetX;
+
+    /**
+     * @param viewWidth Width of the overlay
+     * @param viewHeight Height of the overlay
+     * @param scaleX Overlay width divided by the width of the upright preview
+     * @param scaleY Overlay height divided by the height of the upright preview
+     * @param mirrored Whether the preview is mirrored, as it is for the front camera
+     */
+    public ViewTransform(int viewWidth, int viewHeight, float scaleX, float scaleY,
+                         boolean mirrored) {
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mMirrored = mirrored;
+        mFactorX = mirrored ? -scaleX : scaleX;
+        mOffsetX = mirrored ? viewWidth : 0;
+    }
+
+    /**
+     * @param previewWidth Width of the upright preview, i.e. the shorter side in portrait
+     * @param previewHeight Height of the upright preview
+     */
+    public static ViewTransform fromPreview(int viewWidth, int viewHeight, int previewWidth,
+                                            int previewHeight, boolean mirrored) {
+        return new ViewTransform(viewWidth, viewHeight, (float) viewWidth / (float) previewWidth,
+                (float) viewHeight / (float) previewHeight, mirrored);
+    }
+
+    /**
+     * @return x on the overlay of an x on the preview
+     */
+    public float mapX(float x) {
+        return mFactorX * x + mOffsetX;
+    }
+
+    /**
+     * @return y on the overlay of a y on the preview
+     */
+    public float mapY(float y) {
+        return mScaleY * y;
+    }
+
+    /**
+     * @return A horizontal length on the preview scaled to the overlay
+     */
+    public float scaleX(float width) {
+        return mScaleX * width;
+    }
+
+    /**
+     * @return A vertical length on the preview scaled to the overlay
+     */
+    public float scaleY(float height) {
+        return mScaleY * height;
+    }
+
+    /**
+     * @return X position of the center of the face on the overlay
+     */
+    public float getFaceX(FaceObservation face) {
+        return mapX(face.getCenterX());
+    }
+
+    /**
+     * @return Y position of the center of the face on the overlay
+     */
+    public float getFaceY(FaceObservation face) {
+        return mapY(face.getCenterY());
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    public boolean isMirrored() {
+        return mMirrored;
+    }
+
+    /**
+     * @return Whether this transform maps the same way as one built from these values, e.g. to
+     * only build a new one when something changed
+     */
+    public boolean matches(int viewWidth, int viewHeight, float scaleX, float scaleY,
+                           boolean mirrored) {
+        return viewWidth == mViewWidth && viewHeight == mViewHeight && scaleX == mScaleX
+                && scaleY == mScaleY && mirrored == mMirrored;
+    }
+}
@@ -0,0 +1,24 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+/**
+ * A person who doesn't move.
+ */
+public class FixedSubject implements SubjectPath {
+    private final float mPan;
+    private final float mTilt;
+
+    public FixedSubject(float pan, float tilt) {
+        mPan = pan;
+        mTilt = tilt;
+    }
+
+    @Override
+    public float getPan(long timeMs) {
+        return mPan;
+    }
+
+    @Override
+    public float getTilt(long timeMs) {
+        return mTilt;
+    }
+}
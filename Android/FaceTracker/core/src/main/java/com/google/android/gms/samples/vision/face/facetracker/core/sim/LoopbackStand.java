@@ -0,0 +1,221 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandAck;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandCodec;
+import com.google.android.gms.samples.vision.face.facetracker.core.MemoryTransport;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Stand-in for PhoneServer.py on a local TCP port or behind a {@link MemoryTransport}, for trying
+ * out the command link without a Pi. It decodes command frames the way the server does and
+ * acknowledges timestamped ones after a simulated USB transfer time, and keep-alives straight
+ * away. Its clock can be set off from the app's, to check that the offset estimate finds it.<p>
+ *
+ * Serves one connection at a time on its own thread.
+ */
+public class LoopbackStand {
+    private final int mUsbDelayMs;
+    private final long mClockOffsetUs;
+    private ServerSocket mServerSocket;
+    private Thread mThread;
+    private volatile Closeable mClient;
+    private volatile int mCommandCount;
+    private volatile boolean mStalled;
+
+    /**
+     * @param usbDelayMs How long each USB transfer takes
+     * @param clockOffsetUs How far the stand's clock is ahead of {@link System#nanoTime()}
+     */
+    public LoopbackStand(int usbDelayMs, long clockOffsetUs) {
+        mUsbDelayMs = usbDelayMs;
+        mClockOffsetUs = clockOffsetUs;
+    }
+
+    /**
+     * Starts listening on a free port on the loopback interface.
+     *
+     * @return The port to connect to
+     */
+    public int start() throws IOException {
+        mServerSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        startThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Starts serving connections opened on an in-memory transport instead of a port.
+     *
+     * @return The transport to send commands over
+     */
+    public MemoryTransport startInMemory() {
+        final MemoryTransport transport = new MemoryTransport();
+        startThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(transport);
+            }
+        });
+        return transport;
+    }
+
+    private void startThread(Runnable loop) {
+        mThread = new Thread(loop, "LoopbackStand");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stops listening and drops the current connection.
+     */
+    public void stop() {
+        if (mServerSocket != null) {
+            try {
+                mServerSocket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        mThread.interrupt();
+        closeClient();
+    }
+
+    /**
+     * Drops the current connection, as if the link went down, but keeps listening.
+     */
+    public void closeClient() {
+        Closeable client = mClient;
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Stops answering on the current connection without closing it, as if it went half-open.
+     * Frames sent on it are read and dropped. The next connection is answered again.
+     */
+    public void stallClient() {
+        mStalled = true;
+    }
+
+    /**
+     * @return Number of commands received so far, not counting keep-alives
+     */
+    public int getCommandCount() {
+        return mCommandCount;
+    }
+
+    private long nowUs() {
+        return System.nanoTime() / 1000 + mClockOffsetUs;
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                Socket client = mServerSocket.accept();
+                client.setTcpNoDelay(true);
+                mClient = client;
+                mStalled = false;
+                serve(new BufferedInputStream(client.getInputStream()), client.getOutputStream());
+            } catch (IOException e) {
+                // Dropped or stopped, wait for the next connection
+            } finally {
+                closeClient();
+                mClient = null;
+            }
+        }
+    }
+
+    private void acceptLoop(MemoryTransport transport) {
+        while (true) {
+            try {
+                MemoryTransport.Connection client = transport.accept();
+                mClient = client;
+                mStalled = false;
+                serve(client.getInputStream(), client.getOutputStream());
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // Dropped or stopped, wait for the next connection
+            } finally {
+                closeClient();
+                mClient = null;
+            }
+        }
+    }
+
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        byte[] frame = new byte[CommandCodec.TIMED_FRAME_SIZE];
+        byte[] ackFrame = new byte[CommandCodec.ACK_SIZE];
+        CommandAck ack = new CommandAck();
+        while (true) {
+            int sync = in.read();
+            if (sync < 0) {
+                return;
+            }
+            int size;
+            if (sync == CommandCodec.SYNC) {
+                size = CommandCodec.FRAME_SIZE;
+            } else if (sync == CommandCodec.TIMED_SYNC) {
+                size = CommandCodec.TIMED_FRAME_SIZE;
+            } else {
+                continue;
+            }
+            frame[0] = (byte) sync;
+            for (int read = 1; read < size; ) {
+                int n = in.read(frame, read, size - read);
+                if (n < 0) {
+                    return;
+                }
+                read += n;
+            }
+            long receivedUs = nowUs();
+            int opcode = frame[1] & 0xFF;
+            boolean ping = sync == CommandCodec.TIMED_SYNC && opcode == CommandCodec.PING_OPCODE;
+            if (mStalled || (frame[size - 1] & 0xFF) != CommandCodec.checksum(frame, 0, size)
+                    || (!ping && Command.fromOpcode(opcode) == null)) {
+                continue;
+            }
+            if (!ping) {
+                mCommandCount++;
+            }
+            if (!ping && mUsbDelayMs > 0) {
+                try {
+                    Thread.sleep(mUsbDelayMs);
+                } catch (InterruptedException e) {
+                    // Stopped, which the accept loop sees next
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (sync == CommandCodec.TIMED_SYNC) {
+                long sentUs = 0;
+                for (int i = 7; i < 15; i++) {
+                    sentUs = (sentUs << 8) | (frame[i] & 0xFF);
+                }
+                int sequence = ((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF);
+                ack.set(opcode, sequence, sentUs, receivedUs, nowUs());
+                CommandCodec.encodeAck(ack, ackFrame, 0);
+                out.write(ackFrame);
+                out.flush();
+            }
+        }
+    }
+}
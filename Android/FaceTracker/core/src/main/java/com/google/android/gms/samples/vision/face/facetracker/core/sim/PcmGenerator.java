@@ -0,0 +1,105 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic 16 bit PCM for trying the audio code without a microphone: background noise, plus an
+ * optional beat of short decaying tone bursts, optionally louder in one channel than the other as
+ * if the sound came from one side. Seeded, so the same settings always give the same samples.
+ */
+public class PcmGenerator {
+    private static final float TONE_HZ = 880f;
+    private static final float BURST_DECAY_MS = 25f;
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final Random mRandom;
+
+    private float mNoiseLevel = 0.01f;
+    private float mBeatLevel;
+    private float mBeatIntervalFrames;
+    private float mBalance;
+    private long mFrame;
+
+    /**
+     * @param channelCount 1 for mono, 2 for interleaved left and right
+     */
+    public PcmGenerator(int sampleRate, int channelCount, long seed) {
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * @param level Standard deviation of the background noise, as a fraction of full scale
+     */
+    public void setNoise(float level) {
+        mNoiseLevel = level;
+    }
+
+    /**
+     * @param bpm Beats per minute, or 0 for no beat
+     * @param level Peak level of each burst, as a fraction of full scale
+     */
+    public void setBeat(float bpm, float level) {
+        mBeatIntervalFrames = bpm > 0 ? mSampleRate * 60f / bpm : 0;
+        mBeatLevel = level;
+    }
+
+    /**
+     * @param balance Where the beat comes from, -1 for only the left channel, 0 for both equally
+     *                and 1 for only the right channel. Only used for stereo.
+     */
+    public void setBalance(float balance) {
+        mBalance = balance;
+    }
+
+    /**
+     * Writes the next frames at the position of out, and advances the position past them.
+     */
+    public void fill(ShortBuffer out, int frames) {
+        float leftGain = Math.min(1f, 1f - mBalance);
+        float rightGain = Math.min(1f, 1f + mBalance);
+        for (int i = 0; i < frames; i++, mFrame++) {
+            float beat = 0;
+            if (mBeatIntervalFrames > 0) {
+                float sinceBeatMs = (mFrame % mBeatIntervalFrames) * 1000f / mSampleRate;
+                beat = mBeatLevel * (float) Math.exp(-sinceBeatMs / BURST_DECAY_MS)
+                        * (float) Math.sin(2 * Math.PI * TONE_HZ * mFrame / mSampleRate);
+            }
+            if (mChannelCount == 1) {
+                out.put(toSample(beat + noise()));
+            } else {
+                out.put(toSample(beat * leftGain + noise()));
+                out.put(toSample(beat * rightGain + noise()));
+                for (int channel = 2; channel < mChannelCount; channel++) {
+                    out.put(toSample(beat + noise()));
+                }
+            }
+        }
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * @return Time of the next frame to be generated
+     */
+    public long getTimeMs() {
+        return mFrame * 1000 / mSampleRate;
+    }
+
+    private float noise() {
+        return (float) mRandom.nextGaussian() * mNoiseLevel;
+    }
+
+    private static short toSample(float value) {
+        return (short) Math.max(-32768, Math.min(32767, Math.round(value * 32767f)));
+    }
+}
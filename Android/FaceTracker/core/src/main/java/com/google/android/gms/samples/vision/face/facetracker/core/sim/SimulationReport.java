@@ -0,0 +1,122 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+import java.util.Locale;
+
+/**
+ * What happened during a {@link StandSimulator} run. Errors and overshoots are measured on the
+ * true position of the face, relative to half the size of the view, so 1 is the edge of the
+ * screen.
+ */
+public class SimulationReport {
+    private long mSimulatedMs;
+    private int mCommands;
+    private int mMoves;
+    private long mCenteredMs;
+    private long mFramesLost;
+    private long mFrames;
+    private double mErrorSum;
+    private double mOvershootSum;
+    private float mMaxOvershoot;
+    private long mConvergenceMs = -1;
+
+    void onStep(boolean centered, float error) {
+        mSimulatedMs++;
+        if (centered) {
+            mCenteredMs++;
+        }
+        mErrorSum += error;
+    }
+
+    void onFrame(boolean lost) {
+        mFrames++;
+        if (lost) {
+            mFramesLost++;
+        }
+    }
+
+    void onCommand() {
+        mCommands++;
+    }
+
+    /**
+     * @param overshoot How far past the center the face went because of a finished move
+     */
+    void onMoveDone(float overshoot) {
+        mMoves++;
+        mOvershootSum += overshoot;
+        mMaxOvershoot = Math.max(mMaxOvershoot, overshoot);
+    }
+
+    void setConvergenceMs(long convergenceMs) {
+        mConvergenceMs = convergenceMs;
+    }
+
+    public long getSimulatedMs() {
+        return mSimulatedMs;
+    }
+
+    /**
+     * @return Number of commands the steering logic sent
+     */
+    public int getCommands() {
+        return mCommands;
+    }
+
+    public float getCommandsPerSecond() {
+        return mSimulatedMs == 0 ? 0f : mCommands * 1000f / mSimulatedMs;
+    }
+
+    /**
+     * @return Fraction of the time the face was in the center region
+     */
+    public float getCenteredFraction() {
+        return mSimulatedMs == 0 ? 0f : (float) mCenteredMs / mSimulatedMs;
+    }
+
+    /**
+     * @return Mean distance of the face from the center
+     */
+    public float getMeanError() {
+        return mSimulatedMs == 0 ? 0f : (float) (mErrorSum / mSimulatedMs);
+    }
+
+    /**
+     * @return Fraction of camera frames in which the face was out of view
+     */
+    public float getLostFraction() {
+        return mFrames == 0 ? 0f : (float) mFramesLost / mFrames;
+    }
+
+    /**
+     * @return Number of moves the stand made
+     */
+    public int getMoves() {
+        return mMoves;
+    }
+
+    public float getMeanOvershoot() {
+        return mMoves == 0 ? 0f : (float) (mOvershootSum / mMoves);
+    }
+
+    public float getMaxOvershoot() {
+        return mMaxOvershoot;
+    }
+
+    /**
+     * @return Time {@link StandSimulator#runUntilCentered} took to get the face centered for good,
+     * or -1 if it did not converge or was not used
+     */
+    public long getConvergenceMs() {
+        return mConvergenceMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%.1fs simulated, %d commands (%.2f/s), %d moves, overshoot mean %.3f max %.3f, "
+                        + "centered %.0f%%, mean error %.3f, face lost %.0f%%, converged in %s",
+                mSimulatedMs / 1000f, mCommands, getCommandsPerSecond(), mMoves,
+                getMeanOvershoot(), mMaxOvershoot, getCenteredFraction() * 100, getMeanError(),
+                getLostFraction() * 100, mConvergenceMs < 0 ? "-" : mConvergenceMs + "ms");
+    }
+}
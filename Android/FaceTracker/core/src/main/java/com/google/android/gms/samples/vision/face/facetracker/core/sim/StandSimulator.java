@@ -0,0 +1,475 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+import com.google.android.gms.samples.vision.face.facetracker.core.Clock;
+import com.google.android.gms.samples.vision.face.facetracker.core.Command;
+import com.google.android.gms.samples.vision.face.facetracker.core.CommandSink;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceObservation;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegion;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceRegionClassifier;
+import com.google.android.gms.samples.vision.face.facetracker.core.FaceSteering;
+import com.google.android.gms.samples.vision.face.facetracker.core.PcmBlockListener;
+import com.google.android.gms.samples.vision.face.facetracker.core.ViewTransform;
+
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+/**
+ * Deterministic model of the stand, the phone camera on it and a person in front of it, for
+ * running the steering logic without any hardware. Time advances in 1ms steps of a simulated
+ * clock, so runs are repeatable and much faster than real time.<p>
+ *
+ * The stand executes commands in order like PhoneServer.py does: a new move, stop or "zero" cuts
+ * short a timed move in progress and takes over, and "zero" runs the same two timed moves.
+ * Commands reach the stand after a link latency, and each camera frame reaches the steering logic
+ * after a detection latency. The person in front of the stand follows a {@link SubjectPath}. The
+ * detections are exact unless {@link #setDetectionNoise(float, long)} adds jitter, which is seeded
+ * so runs stay repeatable. With {@link #setAudio(PcmGenerator, PcmBlockListener)}, the person can
+ * also be heard, louder in the channel on their side of the stand.<p>
+ *
+ * Everything that happens is added up in a {@link SimulationReport}.<p>
+ *
+ * Angles are in degrees. Pan grows when the stand turns right and tilt grows when it turns up.
+ */
+public class StandSimulator implements CommandSink, Clock {
+    // PhoneServer.py's "zero" command needs 2000ms down and 7000ms left to reach the end stops
+    public static final int ZERO_TILT_MS = 2000;
+    public static final int ZERO_PAN_MS = 7000;
+    public static final float PAN_RANGE = 270f;
+    public static final float TILT_RANGE = 35f;
+    public static final float PAN_SPEED = PAN_RANGE * 1000f / ZERO_PAN_MS;
+    public static final float TILT_SPEED = TILT_RANGE * 1000f / ZERO_TILT_MS;
+
+    // Front camera held in portrait
+    public static final float FOV_X = 48f;
+    public static final float FOV_Y = 62f;
+    public static final int PREVIEW_WIDTH = 480;
+    public static final int PREVIEW_HEIGHT = 640;
+    public static final int VIEW_WIDTH = 1080;
+    public static final int VIEW_HEIGHT = 1440;
+    public static final float FACE_SIZE = 120f;
+    public static final ViewTransform VIEW = ViewTransform.fromPreview(VIEW_WIDTH, VIEW_HEIGHT,
+            PREVIEW_WIDTH, PREVIEW_HEIGHT, true);
+
+    public static final int FRAME_INTERVAL_MS = 33;
+    public static final int DEFAULT_LINK_LATENCY_MS = 40;
+    public static final int DEFAULT_DETECTION_LATENCY_MS = 70;
+
+    // How long the face has to stay centered with the stand stopped to count as converged
+    public static final int SETTLED_MS = 500;
+    public static final int AUDIO_BLOCK_MS = 20;
+
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final int mLinkLatencyMs;
+    private final int mDetectionLatencyMs;
+
+    private float mPan = PAN_RANGE / 2;
+    private float mTilt = TILT_RANGE / 2;
+    private SubjectPath mSubject = new FixedSubject(PAN_RANGE / 2, TILT_RANGE / 2);
+    private float mSubjectPan;
+    private float mSubjectTilt;
+    private long mNowMs;
+
+    // Command currently moving the stand, or null
+    private Command mMotion;
+    // End of the timed move in progress, when the stand stops by itself, or -1
+    private long mBusyUntilMs = -1;
+    // Second half of a zero, run once the first timed move is done
+    private boolean mZeroPending;
+
+    // Commands on their way to the stand
+    private final Command[] mQueue = new Command[QUEUE_CAPACITY];
+    private final int[] mQueueDurations = new int[QUEUE_CAPACITY];
+    private final long[] mQueueArrivals = new long[QUEUE_CAPACITY];
+    private int mQueueHead;
+    private int mQueueCount;
+
+    // Stand angles over the last mDetectionLatencyMs, since frames show where the stand was
+    private final float[] mPanHistory;
+    private final float[] mTiltHistory;
+
+    private final FaceObservation mObservation = new FaceObservation();
+    // Jitter added to each detected face position, in preview pixels
+    private float mDetectionNoise;
+    private Random mNoiseRandom;
+    // Whether the face was in the last frame that finished detection
+    private boolean mFaceVisible;
+
+    private PcmGenerator mAudio;
+    private PcmBlockListener mAudioListener;
+    private ShortBuffer mAudioBlock;
+    private final FaceRegionClassifier mClassifier = new FaceRegionClassifier();
+    private SimulationReport mReport = new SimulationReport();
+
+    // Direction the face moves in on screen for the last move on each axis (x, y), +1 or -1, or
+    // 0 if the move was not towards the center
+    private final int[] mMoveDirection = new int[2];
+    // Furthest the face has gone past the center since that move started
+    private final float[] mMoveOvershoot = new float[2];
+
+    public StandSimulator() {
+        this(DEFAULT_LINK_LATENCY_MS, DEFAULT_DETECTION_LATENCY_MS);
+    }
+
+    public StandSimulator(int linkLatencyMs, int detectionLatencyMs) {
+        mLinkLatencyMs = linkLatencyMs;
+        mDetectionLatencyMs = detectionLatencyMs;
+        mPanHistory = new float[detectionLatencyMs + 1];
+        mTiltHistory = new float[detectionLatencyMs + 1];
+        resetHistory();
+    }
+
+    /**
+     * Points the stand at the given angles, stopped, with no commands on their way.
+     */
+    public void setStand(float pan, float tilt) {
+        mPan = clamp(pan, 0, PAN_RANGE);
+        mTilt = clamp(tilt, 0, TILT_RANGE);
+        mMotion = null;
+        mBusyUntilMs = -1;
+        mZeroPending = false;
+        mQueueHead = 0;
+        mQueueCount = 0;
+        resetHistory();
+    }
+
+    /**
+     * Places the person at the given angles, in the same frame of reference as the stand.
+     */
+    public void setSubject(float pan, float tilt) {
+        setSubject(new FixedSubject(pan, tilt));
+    }
+
+    public void setSubject(SubjectPath subject) {
+        mSubject = subject;
+        updateSubject();
+    }
+
+    /**
+     * Makes the detected face position jitter from frame to frame like real detections do.
+     *
+     * @param stdDevPx Standard deviation of the jitter, in preview pixels, or 0 for none
+     * @param seed Seed for the jitter, so runs can be repeated
+     */
+    public void setDetectionNoise(float stdDevPx, long seed) {
+        mDetectionNoise = stdDevPx;
+        mNoiseRandom = new Random(seed);
+    }
+
+    /**
+     * Makes the person audible: every {@link #AUDIO_BLOCK_MS} a block of audio from the generator
+     * is handed to the listener, with the balance set from which side of the stand the person is
+     * on, as the sine of the angle between them and where the stand points.
+     */
+    public void setAudio(PcmGenerator generator, PcmBlockListener listener) {
+        mAudio = generator;
+        mAudioListener = listener;
+        int samples = generator.getSampleRate() * AUDIO_BLOCK_MS / 1000 * generator.getChannelCount();
+        mAudioBlock = ShortBuffer.allocate(samples);
+    }
+
+    /**
+     * @return Everything that happened since the simulator was created or the report was reset
+     */
+    public SimulationReport getReport() {
+        finishMove(0);
+        finishMove(1);
+        return mReport;
+    }
+
+    /**
+     * Starts a new report, e.g. to leave out the time spent getting a face centered the first
+     * time.
+     */
+    public void resetReport() {
+        mReport = new SimulationReport();
+        mMoveDirection[0] = 0;
+        mMoveDirection[1] = 0;
+    }
+
+    public float getPan() {
+        return mPan;
+    }
+
+    public float getTilt() {
+        return mTilt;
+    }
+
+    @Override
+    public long getTimeMs() {
+        return mNowMs;
+    }
+
+    /**
+     * @return True if the face was in view in the last frame that went through detection
+     */
+    public boolean isFaceVisible() {
+        return mFaceVisible;
+    }
+
+    public boolean isMoving() {
+        return mMotion != null;
+    }
+
+    @Override
+    public void send(Command command, int durationMs) {
+        mReport.onCommand();
+        if (mQueueCount == QUEUE_CAPACITY) {
+            // Nothing sane sends this many commands, drop the oldest like a full socket would stall
+            mQueueHead = (mQueueHead + 1) % QUEUE_CAPACITY;
+            mQueueCount--;
+        }
+        int tail = (mQueueHead + mQueueCount) % QUEUE_CAPACITY;
+        mQueue[tail] = command;
+        mQueueDurations[tail] = durationMs;
+        mQueueArrivals[tail] = mNowMs + mLinkLatencyMs;
+        mQueueCount++;
+    }
+
+    /**
+     * Advances the simulation by one millisecond, feeding a camera frame to the steering logic
+     * whenever one is due.
+     */
+    public void step(FaceSteering steering) {
+        mNowMs++;
+        updateSubject();
+        runStand();
+        updateReport();
+
+        if (mAudioListener != null && mNowMs % AUDIO_BLOCK_MS == 0) {
+            hearSubject();
+        }
+
+        int history = (int) (mNowMs % mPanHistory.length);
+        mPanHistory[history] = mPan;
+        mTiltHistory[history] = mTilt;
+
+        if (mNowMs % FRAME_INTERVAL_MS == 0) {
+            // The frame captured mDetectionLatencyMs ago is the one that finished detection now
+            int captured = (int) ((mNowMs + 1) % mPanHistory.length);
+            boolean visible = observe(mPanHistory[captured], mTiltHistory[captured],
+                    mNowMs - mDetectionLatencyMs);
+            mFaceVisible = visible;
+            if (visible) {
+                steering.update(mObservation, VIEW);
+            }
+            mReport.onFrame(!visible);
+        }
+    }
+
+    /**
+     * Runs the steering logic until the face has been centered with the stand stopped for
+     * {@link #SETTLED_MS}.
+     *
+     * @return The time it took to get the face into the center for good, or -1 if that did not
+     * happen within maxMs
+     */
+    public long runUntilCentered(FaceSteering steering, long maxMs) {
+        long startMs = mNowMs;
+        long centeredSinceMs = -1;
+        while (mNowMs - startMs < maxMs) {
+            step(steering);
+            if (!isMoving() && getRegion() == FaceRegion.CENTER) {
+                if (centeredSinceMs < 0) {
+                    centeredSinceMs = mNowMs;
+                } else if (mNowMs - centeredSinceMs >= SETTLED_MS) {
+                    mReport.setConvergenceMs(centeredSinceMs - startMs);
+                    return centeredSinceMs - startMs;
+                }
+            } else {
+                centeredSinceMs = -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the steering logic for the given time, e.g. to follow a moving face.
+     *
+     * @return The report, covering this run and anything before it since the last reset
+     */
+    public SimulationReport run(FaceSteering steering, long durationMs) {
+        long endMs = mNowMs + durationMs;
+        while (mNowMs < endMs) {
+            step(steering);
+        }
+        return getReport();
+    }
+
+    /**
+     * @return The region the face is in right now, as opposed to what the delayed frames show
+     */
+    public FaceRegion getRegion() {
+        return mClassifier.classify(VIEW_WIDTH, VIEW_HEIGHT, (int) viewX(mPan), (int) viewY(mTilt));
+    }
+
+    private void runStand() {
+        if (mBusyUntilMs >= 0 && mNowMs >= mBusyUntilMs) {
+            // The server sends a stop once a timed move is done
+            mMotion = null;
+            mBusyUntilMs = -1;
+            if (mZeroPending) {
+                mZeroPending = false;
+                startMove(Command.LEFT, ZERO_PAN_MS);
+            }
+        }
+        while (mQueueCount > 0 && mQueueArrivals[mQueueHead] <= mNowMs) {
+            Command command = mQueue[mQueueHead];
+            int durationMs = mQueueDurations[mQueueHead];
+            mQueue[mQueueHead] = null;
+            mQueueHead = (mQueueHead + 1) % QUEUE_CAPACITY;
+            mQueueCount--;
+            execute(command, durationMs);
+        }
+
+        if (mMotion != null) {
+            switch (mMotion) {
+                case LEFT:
+                    mPan = clamp(mPan - PAN_SPEED / 1000f, 0, PAN_RANGE);
+                    break;
+                case RIGHT:
+                    mPan = clamp(mPan + PAN_SPEED / 1000f, 0, PAN_RANGE);
+                    break;
+                case UP:
+                    mTilt = clamp(mTilt + TILT_SPEED / 1000f, 0, TILT_RANGE);
+                    break;
+                case DOWN:
+                    mTilt = clamp(mTilt - TILT_SPEED / 1000f, 0, TILT_RANGE);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void execute(Command command, int durationMs) {
+        if (command != Command.LED_ON && command != Command.LED_OFF) {
+            // Takes over from the timed move in progress, whose stop is then never sent
+            mBusyUntilMs = -1;
+            mZeroPending = false;
+        }
+        switch (command) {
+            case UP:
+            case DOWN:
+            case LEFT:
+            case RIGHT:
+                startMove(command, durationMs);
+                break;
+            case STOP:
+                mMotion = null;
+                break;
+            case ZERO:
+                startMove(Command.DOWN, ZERO_TILT_MS);
+                mZeroPending = true;
+                break;
+            default:
+                // The LED doesn't matter for steering
+                break;
+        }
+    }
+
+    private void startMove(Command command, int durationMs) {
+        mMotion = command;
+        if (durationMs > 0) {
+            mBusyUntilMs = mNowMs + durationMs;
+        }
+
+        // Moving right or up moves the face right or down on the screen
+        int axis = command == Command.LEFT || command == Command.RIGHT ? 0 : 1;
+        int direction = command == Command.RIGHT || command == Command.UP ? 1 : -1;
+        finishMove(axis);
+        float error = axis == 0 ? errorX() : errorY();
+        // A move that doesn't start on the far side of the center can't overshoot it
+        mMoveDirection[axis] = direction * error < 0 ? direction : 0;
+        mMoveOvershoot[axis] = 0;
+    }
+
+    private void finishMove(int axis) {
+        if (mMoveDirection[axis] != 0) {
+            mReport.onMoveDone(mMoveOvershoot[axis]);
+            mMoveDirection[axis] = 0;
+        }
+    }
+
+    private void updateReport() {
+        float errorX = errorX();
+        float errorY = errorY();
+        if (mMoveDirection[0] != 0) {
+            mMoveOvershoot[0] = Math.max(mMoveOvershoot[0], mMoveDirection[0] * errorX);
+        }
+        if (mMoveDirection[1] != 0) {
+            mMoveOvershoot[1] = Math.max(mMoveOvershoot[1], mMoveDirection[1] * errorY);
+        }
+        mReport.onStep(getRegion() == FaceRegion.CENTER, (float) Math.hypot(errorX, errorY));
+    }
+
+    private void hearSubject() {
+        double angle = Math.toRadians(mSubjectPan - mPan);
+        mAudio.setBalance((float) Math.sin(angle));
+        mAudioBlock.clear();
+        mAudio.fill(mAudioBlock, mAudioBlock.capacity() / mAudio.getChannelCount());
+        mAudioBlock.flip();
+        mAudioListener.onBlock(mAudioBlock, mAudio.getChannelCount(), mAudio.getSampleRate(), mNowMs);
+    }
+
+    private void updateSubject() {
+        mSubjectPan = mSubject.getPan(mNowMs);
+        mSubjectTilt = mSubject.getTilt(mNowMs);
+    }
+
+    /**
+     * @return Where the face is horizontally right now, -1 at the left edge and 1 at the right
+     */
+    private float errorX() {
+        return (viewX(mPan) - VIEW_WIDTH / 2f) / (VIEW_WIDTH / 2f);
+    }
+
+    /**
+     * @return Where the face is vertically right now, -1 at the top edge and 1 at the bottom
+     */
+    private float errorY() {
+        return (viewY(mTilt) - VIEW_HEIGHT / 2f) / (VIEW_HEIGHT / 2f);
+    }
+
+    /**
+     * Fills in the observation of the face as seen with the stand at the given angles.
+     *
+     * @return False if the face is out of view
+     */
+    private boolean observe(float pan, float tilt, long timestampMs) {
+        float x = viewX(pan);
+        float y = viewY(tilt);
+        if (x < 0 || x > VIEW_WIDTH || y < 0 || y > VIEW_HEIGHT) {
+            return false;
+        }
+        // Undo the mirroring and scaling that FaceSteering applies to get back to the preview
+        float centerX = (VIEW_WIDTH - x) * PREVIEW_WIDTH / VIEW_WIDTH;
+        float centerY = y * PREVIEW_HEIGHT / VIEW_HEIGHT;
+        if (mDetectionNoise > 0) {
+            centerX += (float) mNoiseRandom.nextGaussian() * mDetectionNoise;
+            centerY += (float) mNoiseRandom.nextGaussian() * mDetectionNoise;
+        }
+        mObservation.set(0, timestampMs, centerX - FACE_SIZE / 2, centerY - FACE_SIZE / 2,
+                FACE_SIZE, FACE_SIZE);
+        return true;
+    }
+
+    private float viewX(float pan) {
+        return VIEW_WIDTH / 2f - (mSubjectPan - pan) * VIEW_WIDTH / FOV_X;
+    }
+
+    private float viewY(float tilt) {
+        return VIEW_HEIGHT / 2f - (mSubjectTilt - tilt) * VIEW_HEIGHT / FOV_Y;
+    }
+
+    private void resetHistory() {
+        for (int i = 0; i < mPanHistory.length; i++) {
+            mPanHistory[i] = mPan;
+            mTiltHistory[i] = mTilt;
+        }
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
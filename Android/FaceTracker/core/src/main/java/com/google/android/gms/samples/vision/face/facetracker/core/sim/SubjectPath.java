@@ -0,0 +1,11 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+/**
+ * Where the person in front of the stand is over time, as angles in the same frame of reference
+ * as the stand's pan and tilt.
+ */
+public interface SubjectPath {
+    float getPan(long timeMs);
+
+    float getTilt(long timeMs);
+}
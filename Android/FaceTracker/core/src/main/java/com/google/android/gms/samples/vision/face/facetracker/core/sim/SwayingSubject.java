@@ -0,0 +1,37 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+/**
+ * A person swaying side to side and bobbing up and down around a fixed point, e.g. dancing on the
+ * spot.
+ */
+public class SwayingSubject implements SubjectPath {
+    private final float mPan;
+    private final float mTilt;
+    private final float mPanAmplitude;
+    private final float mTiltAmplitude;
+    private final float mPeriodMs;
+
+    /**
+     * @param panAmplitude How far the person sways to either side, in degrees
+     * @param tiltAmplitude How far the person bobs up and down, in degrees
+     * @param periodMs Time for one sway from side to side and back
+     */
+    public SwayingSubject(float pan, float tilt, float panAmplitude, float tiltAmplitude, float periodMs) {
+        mPan = pan;
+        mTilt = tilt;
+        mPanAmplitude = panAmplitude;
+        mTiltAmplitude = tiltAmplitude;
+        mPeriodMs = periodMs;
+    }
+
+    @Override
+    public float getPan(long timeMs) {
+        return mPan + mPanAmplitude * (float) Math.sin(2 * Math.PI * timeMs / mPeriodMs);
+    }
+
+    @Override
+    public float getTilt(long timeMs) {
+        // Bobs twice per sway
+        return mTilt + mTiltAmplitude * (float) Math.sin(4 * Math.PI * timeMs / mPeriodMs);
+    }
+}
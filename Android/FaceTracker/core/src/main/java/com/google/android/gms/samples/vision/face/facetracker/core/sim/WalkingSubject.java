@@ -0,0 +1,80 @@
+package com.google.android.gms.samples.vision.face.facetracker.core.sim;
+
+import java.util.Random;
+
+/**
+ * A person who walks to a new spot every few seconds and then stands still, e.g. moving around a
+ * room. The spots are picked from a seeded random sequence, so a given seed always gives the same
+ * path. Positions have to be asked for in increasing time order.
+ */
+public class WalkingSubject implements SubjectPath {
+    private final Random mRandom;
+    private final float mPanCenter;
+    private final float mTiltCenter;
+    private final float mPanRange;
+    private final float mTiltRange;
+    private final float mSpeed;
+    private final long mPauseMs;
+
+    private float mFromPan;
+    private float mFromTilt;
+    private float mToPan;
+    private float mToTilt;
+    private long mLegStartMs;
+    private long mLegEndMs;
+
+    /**
+     * @param panRange How far from the center in pan the person goes, in degrees
+     * @param tiltRange How far from the center in tilt the person goes, in degrees
+     * @param speed How fast the person moves, in degrees per second
+     * @param pauseMs How long the person stands still at each spot
+     */
+    public WalkingSubject(long seed, float pan, float tilt, float panRange, float tiltRange,
+                          float speed, long pauseMs) {
+        mRandom = new Random(seed);
+        mPanCenter = pan;
+        mTiltCenter = tilt;
+        mPanRange = panRange;
+        mTiltRange = tiltRange;
+        mSpeed = speed;
+        mPauseMs = pauseMs;
+        mToPan = pan;
+        mToTilt = tilt;
+        nextLeg(0);
+    }
+
+    @Override
+    public float getPan(long timeMs) {
+        advance(timeMs);
+        return mFromPan + (mToPan - mFromPan) * progress(timeMs);
+    }
+
+    @Override
+    public float getTilt(long timeMs) {
+        advance(timeMs);
+        return mFromTilt + (mToTilt - mFromTilt) * progress(timeMs);
+    }
+
+    private void advance(long timeMs) {
+        while (timeMs >= mLegEndMs + mPauseMs) {
+            nextLeg(mLegEndMs + mPauseMs);
+        }
+    }
+
+    private float progress(long timeMs) {
+        if (timeMs >= mLegEndMs) {
+            return 1f;
+        }
+        return (float) (timeMs - mLegStartMs) / (mLegEndMs - mLegStartMs);
+    }
+
+    private void nextLeg(long startMs) {
+        mFromPan = mToPan;
+        mFromTilt = mToTilt;
+        mToPan = mPanCenter + (2 * mRandom.nextFloat() - 1) * mPanRange;
+        mToTilt = mTiltCenter + (2 * mRandom.nextFloat() - 1) * mTiltRange;
+        float distance = (float) Math.hypot(mToPan - mFromPan, mToTilt - mFromTilt);
+        mLegStartMs = startMs;
+        mLegEndMs = startMs + Math.max(1, (long) (distance / mSpeed * 1000));
+    }
+}
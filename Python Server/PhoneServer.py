@@ -3,17 +3,38 @@ import sys
 import platform
 import time
 import socket
+import struct
 import re
 import json
+import math
 import urllib2
 import base64
+import threading
+import Queue
+import argparse
 
-import usb.core
-import usb.util
-
-from bluetooth import *
 from datetime import datetime
 
+parser = argparse.ArgumentParser(description="Runs the stand commands sent from the app")
+parser.add_argument("--inline", action="store_true",
+                    help="run each command on the receive thread as it arrives")
+parser.add_argument("--tcp", type=int, metavar="PORT",
+                    help="also listen for the app on this TCP port, e.g. over Wi-Fi")
+parser.add_argument("--no-bluetooth", action="store_true",
+                    help="don't listen on RFCOMM, only on the TCP port")
+parser.add_argument("--no-usb", action="store_true",
+                    help="go through the motions without a launcher, e.g. to soak test the link")
+ARGS = parser.parse_args()
+if ARGS.no_bluetooth and ARGS.tcp is None:
+    parser.error("--no-bluetooth needs --tcp")
+
+# Neither is needed to test the link on a machine without radios or a launcher
+if not ARGS.no_usb:
+    import usb.core
+    import usb.util
+if not ARGS.no_bluetooth:
+    from bluetooth import *
+
 def log(text):
     print str(datetime.now()) + " | " + text
 
@@ -46,6 +67,12 @@ def setup_usb():
     global DEVICE 
     global DEVICE_TYPE
 
+    if ARGS.no_usb:
+        # send_cmd and led skip the transfer but still count it as done
+        DEVICE_TYPE = "None"
+        log("No launcher, commands are only logged")
+        return
+
     DEVICE = usb.core.find(idVendor=0x2123, idProduct=0x1010)
 
     if DEVICE is None:
@@ -74,37 +101,46 @@ def send_cmd(cmd):
 	DEVICE.ctrl_transfer(0x21, 0x09, 0, 0, [0x02, cmd, 0x00,0x00,0x00,0x00,0x00,0x00])
     elif "Original" == DEVICE_TYPE:
 	DEVICE.ctrl_transfer(0x21, 0x09, 0x0200, 0, [cmd])
+    usb_written()
 
 def led(cmd):
     if "Thunder" == DEVICE_TYPE:
 	DEVICE.ctrl_transfer(0x21, 0x09, 0, 0, [0x03, cmd, 0x00,0x00,0x00,0x00,0x00,0x00])
     elif "Original" == DEVICE_TYPE:
 	log("There is no LED on this device")
+    usb_written()
 
 def send_move_timed(cmd, duration_ms):
+    """Moves for the given time, then stops. Returns False if a newer command cut the move
+    short, in which case it is left to that command to stop or move on"""
     send_cmd(cmd)
-    time.sleep(duration_ms / 1000.0)
+    if not STAND.wait(duration_ms):
+        return False
     send_cmd(STOP)
+    return True
 
-def send_move(cmd):
-    send_cmd(cmd)
+def send_move(cmd, duration_ms=0):
+    if duration_ms > 0:
+        send_move_timed(cmd, duration_ms)
+    else:
+        send_cmd(cmd)
 
-def run_command(command):
+def run_command(command, duration_ms=0):
     command = command.lower()
     if command == "right":
-        send_move(RIGHT)
+        send_move(RIGHT, duration_ms)
     elif command == "left":
-        send_move(LEFT)
+        send_move(LEFT, duration_ms)
     elif command == "up":
-        send_move(UP)
+        send_move(UP, duration_ms)
     elif command == "down":
-        send_move(DOWN)
+        send_move(DOWN, duration_ms)
     elif command == "stop":
         send_cmd(STOP)
     elif command == "zero" or command == "park" or command == "reset":
         # Move to bottom-left
-        send_move_timed(DOWN, 2000)
-        send_move_timed(LEFT, 7000)
+        if send_move_timed(DOWN, 2000):
+            send_move_timed(LEFT, 7000)
     elif command == "led-on":
         led(0x01)
     elif command == "led-off":
@@ -113,76 +149,404 @@ def run_command(command):
         log("Error: Unknown command: '%s'" % command)
 
 
+#######################  COMMAND FRAMES  ######################
+
+# Commands from the app arrive as fixed size binary frames (see CommandCodec.java):
+#   byte 0     0xA5 sync byte
+#   byte 1     opcode, see OPCODES
+#   bytes 2-3  duration in ms, big endian. 0 keeps moving until the next command
+#   bytes 4-5  sequence number, big endian
+#   byte 6     reserved
+#   byte 7     checksum: sum of bytes 0 to 6, modulo 256
+#
+# Timestamped commands have their own sync byte and carry the time the app sent them:
+#   byte 0       0xA6 sync byte
+#   bytes 1-6    as above
+#   bytes 7-14   time the command was sent in us on the app's clock, big endian
+#   byte 15      checksum: sum of bytes 0 to 14, modulo 256
+#
+# Each timestamped command is acknowledged once its first USB transfer is done:
+#   byte 0       0xA7 sync byte
+#   byte 1       opcode of the command
+#   bytes 2-3    sequence number of the command
+#   bytes 4-6    reserved
+#   bytes 7-14   time the command was sent, echoed
+#   bytes 15-22  time the command was received in us on our clock
+#   bytes 23-30  time the USB transfer was done in us on our clock
+#   byte 31      checksum: sum of bytes 0 to 30, modulo 256
+#
+# A timestamped frame with the ping opcode is a keep-alive. It is acknowledged straight away by
+# the receive thread, without touching USB, so the app can tell when the connection went half-open.
+
+FRAME_SYNC = 0xA5
+FRAME_SIZE = 8
+TIMED_FRAME_SYNC = 0xA6
+TIMED_FRAME_SIZE = 16
+ACK_SYNC = 0xA7
+
+OPCODES = {
+    0x01 : "up",
+    0x02 : "down",
+    0x03 : "left",
+    0x04 : "right",
+    0x05 : "stop",
+    0x06 : "zero",
+    0x07 : "led-on",
+    0x08 : "led-off",
+    0x09 : "ping",
+}
+COMMAND_OPCODES = dict((name, code) for code, name in OPCODES.items())
+
+class FrameDecoder(object):
+    """Splits the received bytes into command frames, however they were chunked by recv()"""
+
+    def __init__(self):
+        self.buffer = bytearray()
+
+    def feed(self, data):
+        """Adds received bytes, and returns a list of (command, duration_ms, sequence, sent_us)
+        tuples for every complete frame. sent_us is None for frames without a timestamp"""
+        self.buffer.extend(data)
+        frames = []
+        while len(self.buffer) >= FRAME_SIZE:
+            if self.buffer[0] == FRAME_SYNC:
+                size = FRAME_SIZE
+            elif self.buffer[0] == TIMED_FRAME_SYNC:
+                size = TIMED_FRAME_SIZE
+            else:
+                # Out of sync, skip ahead to the next sync byte
+                del self.buffer[0]
+                continue
+            if len(self.buffer) < size:
+                break
+            frame = self.buffer[:size]
+            if sum(frame[:size - 1]) & 0xFF != frame[size - 1]:
+                log("Error: Bad checksum, dropping a byte to resync")
+                del self.buffer[0]
+                continue
+            del self.buffer[:size]
+            command = OPCODES.get(frame[1])
+            if command is None:
+                log("Error: Unknown opcode: 0x%02x" % frame[1])
+                continue
+            duration_ms = (frame[2] << 8) | frame[3]
+            sequence = (frame[4] << 8) | frame[5]
+            sent_us = None
+            if size == TIMED_FRAME_SIZE:
+                sent_us = struct.unpack(">Q", bytes(frame[7:15]))[0]
+            frames.append((command, duration_ms, sequence, sent_us))
+        return frames
+
+    def is_empty(self):
+        return len(self.buffer) == 0
+
+##########################  LATENCY  #########################
+
+class LatencyHistogram(object):
+    """Counts latencies in microseconds in the same fixed buckets as LatencyHistogram.java:
+    values below 64us get a bucket each, and every power of two above that is split into 32
+    buckets, so any value is off by at most about 3%"""
+
+    SUB_BUCKET_BITS = 6
+    SUB_BUCKETS = 1 << SUB_BUCKET_BITS
+    HALF_SUB_BUCKETS = SUB_BUCKETS // 2
+    HIGHEST_TRACKABLE_US = (1 << 36) - 1
+    BUCKETS = SUB_BUCKETS + (36 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS
+
+    def __init__(self):
+        self.counts = [0] * self.BUCKETS
+        self.count = 0
+        self.max_us = 0
+
+    def record(self, value_us):
+        value_us = max(0, min(int(value_us), self.HIGHEST_TRACKABLE_US))
+        self.counts[self.index(value_us)] += 1
+        self.count += 1
+        self.max_us = max(self.max_us, value_us)
+
+    def index(self, value_us):
+        if value_us < self.SUB_BUCKETS:
+            return value_us
+        shift = value_us.bit_length() - self.SUB_BUCKET_BITS
+        return (self.SUB_BUCKETS + (shift - 1) * self.HALF_SUB_BUCKETS
+                + (value_us >> shift) - self.HALF_SUB_BUCKETS)
+
+    def highest_value(self, index):
+        if index < self.SUB_BUCKETS:
+            return index
+        shift = (index - self.SUB_BUCKETS) // self.HALF_SUB_BUCKETS + 1
+        sub_bucket = (index - self.SUB_BUCKETS) % self.HALF_SUB_BUCKETS + self.HALF_SUB_BUCKETS
+        return ((sub_bucket + 1) << shift) - 1
+
+    def value_at_percentile(self, percentile):
+        if self.count == 0:
+            return 0
+        target = max(1, int(math.ceil(percentile / 100.0 * self.count)))
+        seen = 0
+        for i, count in enumerate(self.counts):
+            seen += count
+            if seen >= target:
+                return min(self.highest_value(i), self.max_us)
+        return self.max_us
+
+    def summary(self):
+        return "n=%d p50 %.1f p90 %.1f p99 %.1f max %.1f ms" % (
+            self.count, self.value_at_percentile(50) / 1000.0,
+            self.value_at_percentile(90) / 1000.0, self.value_at_percentile(99) / 1000.0,
+            self.max_us / 1000.0)
+
+    def write(self, out, stage):
+        """Writes the summary and every bucket that is not empty, in the same format as the
+        dumps from the app's debug panel"""
+        out.write("# %s %s\n" % (stage, self.summary()))
+        out.write("stage,bucket_max_us,count\n")
+        for i, count in enumerate(self.counts):
+            if count > 0:
+                out.write("%s,%d,%d\n" % (stage, self.highest_value(i), count))
+
+# Time from a command frame being received to its first USB transfer being done
+RECEIVE_TO_USB = LatencyHistogram()
+# The command waiting for its first USB transfer:
+# (received_us, opcode, sequence, sent_us, client_sock). Only touched by the USB thread
+pending = None
+
+def now_us():
+    return int(time.time() * 1000000)
+
+def usb_written():
+    """Called after every USB transfer. The first one for a received command records its
+    latency and, for timestamped commands, sends the ack back to the app"""
+    global pending
+    if pending is None:
+        return
+    received_us, opcode, sequence, sent_us, sock = pending
+    pending = None
+    done_us = now_us()
+    RECEIVE_TO_USB.record(done_us - received_us)
+    if sent_us is not None:
+        send_ack(sock, opcode, sequence, sent_us, received_us, done_us)
+
+# Acks for commands come from the USB thread and acks for pings from the receive threads
+ACK_LOCK = threading.Lock()
+
+def send_ack(sock, opcode, sequence, sent_us, received_us, done_us):
+    ack = bytearray(struct.pack(">BBH3xQQQ", ACK_SYNC, opcode, sequence,
+                                sent_us, received_us, done_us))
+    ack.append(sum(ack) & 0xFF)
+    try:
+        with ACK_LOCK:
+            sock.sendall(bytes(ack))
+    except IOError:
+        log("Error: Could not send the ack for #%d" % sequence)
+
+def dump_latency():
+    log("receive to USB: " + RECEIVE_TO_USB.summary())
+    name = "latency-%s.txt" % datetime.now().strftime("%Y%m%d-%H%M%S")
+    with open(name, "w") as out:
+        RECEIVE_TO_USB.write(out, "RECEIVE_TO_USB")
+    log("Latencies written to " + os.path.abspath(name))
+
 def run_command_set(commands):
     for cmd, value in commands:
         run_command(cmd)
 
+##########################  USB WORKER  #########################
+
+# Commands that take over the motors, and so cut short a timed move still in progress
+MOVES = ("up", "down", "left", "right", "stop", "zero", "park", "reset")
+
+def execute(command, duration_ms, ack):
+    """Runs a command on the USB thread. ack is the pending tuple for its latency and ack,
+    or None for plain text commands"""
+    global pending
+    pending = ack
+    run_command(command, duration_ms)
+    pending = None
+
+class StandWorker(threading.Thread):
+    """Owns the USB device and runs the commands from every client in the order they were
+    received, so a long move never holds up receiving. Timed moves wait on an event instead of
+    sleeping: a new move or stop cuts the wait short, and other commands such as the LED are run
+    during the wait instead of after it"""
+
+    def __init__(self):
+        threading.Thread.__init__(self, name="StandWorker")
+        self.daemon = True
+        self.queue = Queue.Queue()
+        self.preempt = threading.Event()
+        self.lock = threading.Lock()
+        # Moves queued but not taken yet, guarded by lock like the puts to queue
+        self.queued_moves = 0
+
+    def submit(self, command, duration_ms=0, ack=None):
+        """Queues a command from any thread"""
+        command = command.lower()
+        with self.lock:
+            if command in MOVES:
+                self.queued_moves += 1
+            self.queue.put((command, duration_ms, ack))
+        self.preempt.set()
+
+    def wait(self, duration_ms):
+        """Waits out a timed move on the USB thread. Returns False if a move was queued in
+        the meantime"""
+        deadline = time.time() + duration_ms / 1000.0
+        while True:
+            remaining = deadline - time.time()
+            if remaining <= 0:
+                return True
+            self.preempt.wait(remaining)
+            if not self.preempt.is_set():
+                continue
+            self.preempt.clear()
+            with self.lock:
+                if self.queued_moves > 0:
+                    return False
+                # Nothing queued is a move, so it can all go before the move is over
+                queued = []
+                while not self.queue.empty():
+                    queued.append(self.queue.get_nowait())
+            for command, command_duration_ms, ack in queued:
+                execute(command, command_duration_ms, ack)
+
+    def run(self):
+        while True:
+            command, duration_ms, ack = self.queue.get()
+            if command in MOVES:
+                with self.lock:
+                    self.queued_moves -= 1
+            try:
+                execute(command, duration_ms, ack)
+            except Exception, e:
+                log("Error: '%s' failed: %s" % (command, e))
+
+class InlineStand(object):
+    """Runs each command on the receiving thread as it arrives, the way the server used to.
+    Used with --inline"""
+
+    def __init__(self):
+        # With both RFCOMM and TCP, one client on each can be sending at once
+        self.lock = threading.Lock()
+
+    def submit(self, command, duration_ms=0, ack=None):
+        with self.lock:
+            execute(command.lower(), duration_ms, ack)
+
+    def wait(self, duration_ms):
+        time.sleep(duration_ms / 1000.0)
+        return True
+
+PIPELINED = not ARGS.inline
+STAND = StandWorker() if PIPELINED else InlineStand()
+
 setup_usb()
 led(0x01)
+if PIPELINED:
+    STAND.start()
 
 ##########################  MAIN LOOP  #########################
 
+def serve_client(client_sock, client_info):
+    """Receives commands from one client until it disconnects, and hands them to STAND"""
+    log("Accepted connection from " + str(client_info))
+    decoder = FrameDecoder()
+    try:
+        while True:
+            data = client_sock.recv(1024)
+            if len(data) == 0:
+                log("disconnected")
+                break
+            received_us = now_us()
+
+            if decoder.is_empty() and ord(data[0]) not in (FRAME_SYNC, TIMED_FRAME_SYNC):
+                # Plain text command, e.g. sent by hand for testing
+                log("received [%s]" % data)
+                if data == 'dump-latency':
+                    dump_latency()
+                elif data == 'disconnect':
+                    log("manual disconnect")
+                    break
+                else:
+                    STAND.submit(data)
+                continue
+
+            for command, duration_ms, sequence, sent_us in decoder.feed(data):
+                if command == "ping":
+                    if sent_us is not None:
+                        send_ack(client_sock, COMMAND_OPCODES[command], sequence, sent_us,
+                                 received_us, now_us())
+                    continue
+                log("received [%s] %dms #%d" % (command, duration_ms, sequence))
+                STAND.submit(command, duration_ms, (received_us, COMMAND_OPCODES[command],
+                                                    sequence, sent_us, client_sock))
+    except IOError:
+        log("disconnected, IO error")
+    finally:
+        client_sock.close()
+        log("receive to USB: " + RECEIVE_TO_USB.summary())
+
+def accept_loop(server_sock, name):
+    """Accepts clients until the server socket is closed. Each client gets a receive thread of
+    its own, or with --inline is served on this one until it disconnects"""
+    while True:
+        log("Waiting for connection on " + name)
+        client_sock, client_info = server_sock.accept()
+        if isinstance(client_sock, socket.socket):
+            # Acks are single small frames that should go out straight away
+            client_sock.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        if PIPELINED:
+            receiver = threading.Thread(target=serve_client, args=(client_sock, client_info),
+                                        name="Receive %s" % str(client_info))
+            receiver.daemon = True
+            receiver.start()
+        else:
+            serve_client(client_sock, client_info)
 
+def listen_rfcomm():
+    server_sock = BluetoothSocket( RFCOMM )
+    server_sock.bind(("", PORT_ANY))
+    # A reconnecting phone can get in before the old connection has timed out
+    server_sock.listen(2)
 
-while True:
-    
-    ### BLUETOOTH CONFIG ###
-
-	server_sock=BluetoothSocket( RFCOMM )
-	server_sock.bind(("",PORT_ANY))
-	server_sock.listen(1)
+    port = server_sock.getsockname()[1]
 
-	port = server_sock.getsockname()[1]
-    
     # Random identifier, feel free to change
-	uuid = "94f39d29-7d6d-437d-973b-fba39e49d4ee"
-
-	advertise_service( server_sock, "PhoneDemoServer",
-			   service_id = uuid,
-			   service_classes = [ uuid, SERIAL_PORT_CLASS ],
-			   profiles = [ SERIAL_PORT_PROFILE ], 
-			  )
-	
-	log("Waiting for connection on RFCOMM channel %d" % port)
-
-	client_sock, client_info = server_sock.accept()
-	log("Accepted connection from " + str(client_info))
-
-	while True:          
-		
-        # Device control
-        
-		try:
-			data = client_sock.recv(1024)
-			if len(data) == 0: break
-			log("received [%s]" % data)
-
-			if data == 'disconnect':
-				log("manual disconnect")
-
-				client_sock.close()
-				server_sock.close()
-				log("all done")
-
-				break
-			else:
-				run_command(data)
-
-		except IOError:
-			log("disconnected, IO error")
-
-			client_sock.close()
-			server_sock.close()
-			log("all done")
-
-			break
-
-		except KeyboardInterrupt:
-
-			log("disconnected, keyboard interrupt")
-
-			client_sock.close()
-			server_sock.close()
-			log("all done")
-
-			break
+    uuid = "94f39d29-7d6d-437d-973b-fba39e49d4ee"
+
+    advertise_service( server_sock, "PhoneDemoServer",
+                       service_id = uuid,
+                       service_classes = [ uuid, SERIAL_PORT_CLASS ],
+                       profiles = [ SERIAL_PORT_PROFILE ],
+                      )
+    return server_sock, "RFCOMM channel %d" % port
+
+def listen_tcp(port):
+    server_sock = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+    server_sock.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+    server_sock.bind(("", port))
+    server_sock.listen(2)
+    return server_sock, "TCP port %d" % port
+
+listeners = []
+if not ARGS.no_bluetooth:
+    listeners.append(listen_rfcomm())
+if ARGS.tcp is not None:
+    listeners.append(listen_tcp(ARGS.tcp))
+
+try:
+    for server_sock, name in listeners:
+        acceptor = threading.Thread(target=accept_loop, args=(server_sock, name),
+                                    name="Accept " + name)
+        acceptor.daemon = True
+        acceptor.start()
+    # Sleep rather than join, which would keep the keyboard interrupt from getting through
+    while True:
+        time.sleep(1)
+
+except KeyboardInterrupt:
+    log("keyboard interrupt")
+
+finally:
+    for server_sock, name in listeners:
+        server_sock.close()
+    log("all done")